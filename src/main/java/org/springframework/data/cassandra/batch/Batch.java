@@ -41,4 +41,17 @@ public @interface Batch {
 
     boolean unlogged() default false;
 
+    /**
+     * Maximum number of statements of one batch, a larger batch is split, 0 means no limit.
+     * The parts of a split logged batch are separate batches: each part is atomic, the whole batch is not,
+     * a failed part leaves the other parts written.
+     */
+    int maxStatements() default 0;
+
+    /**
+     * Maximum estimated size of the bound values of one batch in bytes, a larger batch is split, 0 means no limit.
+     * Splitting a logged batch drops its atomicity like {@link #maxStatements()}.
+     */
+    long maxBytes() default 0;
+
 }
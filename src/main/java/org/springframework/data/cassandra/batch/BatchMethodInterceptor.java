@@ -16,6 +16,10 @@
 package org.springframework.data.cassandra.batch;
 
 import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.slf4j.Logger;
@@ -35,6 +39,7 @@ import org.springframework.util.StringUtils;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Date: 18.03.14 16:20
@@ -76,15 +81,43 @@ final public class BatchMethodInterceptor implements MethodInterceptor, Ordered,
         try {
             cassandraTemplate.startBatch(batchInfo.getBatchAttributes());
             final Object result = invocation.proceed();
+
+            if (result instanceof CompletableFuture)
+                return applyBatchAsync(cassandraTemplate, (CompletableFuture<?>) result);
+
             cassandraTemplate.applyBatch();
 
             return result;
         } catch (Throwable e) {
-            cassandraTemplate.cancelBatch();
+            // a failed async apply has already left the batch
+            if (cassandraTemplate.isBatchStarted())
+                cassandraTemplate.cancelBatch();
             throw e;
         }
     }
 
+    /**
+     * Statements of an async method are added to the batch in the calling thread, so the batch is applied
+     * right away. The returned future completes when both the method result and the batch are done.
+     */
+    private static Object applyBatchAsync(CassandraTemplate cassandraTemplate, CompletableFuture<?> result) {
+        final CompletableFuture<Object> applied = new CompletableFuture<>();
+
+        Futures.addCallback(cassandraTemplate.applyBatchAsync(), new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                applied.complete(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                applied.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return result.thenCombine(applied, (r, rs) -> r);
+    }
+
     @Override
     public int getOrder() {
         return HIGHEST_PRECEDENCE;
@@ -110,6 +143,8 @@ final public class BatchMethodInterceptor implements MethodInterceptor, Ordered,
             batchAttributes.setTimestamp(ann.timestamp());
 
         batchAttributes.setUnlogged(ann.unlogged());
+        batchAttributes.setMaxStatements(ann.maxStatements());
+        batchAttributes.setMaxBytes(ann.maxBytes());
 
         return batchAttributes;
     }
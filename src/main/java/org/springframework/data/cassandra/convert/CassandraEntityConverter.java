@@ -18,6 +18,7 @@ package org.springframework.data.cassandra.convert;
 import com.datastax.driver.core.querybuilder.Update;
 import org.springframework.data.cassandra.mapping.CassandraPersistentEntity;
 import org.springframework.data.cassandra.mapping.CassandraPersistentProperty;
+import org.springframework.data.cassandra.mapping.NullWriteMode;
 import com.datastax.driver.core.querybuilder.Delete;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.Select;
@@ -26,6 +27,10 @@ import com.datastax.driver.core.Row;
 import org.springframework.data.convert.EntityReader;
 import org.springframework.data.mapping.context.MappingContext;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 /**
  * Central Cassandra specific converter interface from Object to Row.
  * 
@@ -49,8 +54,50 @@ public interface CassandraEntityConverter extends EntityReader<Object, Row> {
 
     Object getEntityId(Object source);
 
+    /**
+     * Writes the column values of the entity, null columns are written only in {@link NullWriteMode#NULL}.
+     */
     void writeInsert(final Object source, final Insert query);
 
+    /**
+     * Returns the null write mode of the entity: the mode of its {@link org.springframework.data.cassandra.mapping.Table}
+     * or else the converter default.
+     *
+     * @param clazz entity class
+     * @return never {@link NullWriteMode#DEFAULT}
+     */
+    NullWriteMode getNullWriteMode(Class<?> clazz);
+
+    /**
+     * Returns the column values {@link #writeInsert(Object, Insert)} would write, in the same order.
+     * Intended for binding prepared statements. Null columns are left out in {@link NullWriteMode#OMIT}
+     * and kept in {@link NullWriteMode#UNSET} to be bound as unset.
+     *
+     * @param source entity
+     * @return ordered map column name -> persistent value
+     */
+    Map<String, Object> getColumnValues(Object source);
+
+    /**
+     * Returns the column values like {@link #getColumnValues(Object)} without the {@link
+     * org.springframework.data.cassandra.mapping.Crypto} columns, nothing is encrypted.
+     * Intended for comparing the values of an entity before and after it changed.
+     *
+     * @param source entity
+     * @return ordered map column name -> persistent value
+     */
+    Map<String, Object> getPlainColumnValues(Object source);
+
+    /**
+     * Returns the primary key column values for the given id, in the same order as the id clause.
+     * Null components of a composite id are skipped.
+     *
+     * @param clazz entity class
+     * @param id entity id
+     * @return ordered map column name -> persistent value
+     */
+    Map<String, Object> getIdColumnValues(Class<?> clazz, Object id);
+
     void writeIdClause(Class<?> clazz, Object id, Select query);
 
     void writeIdClause(Class<?> clazz, Object id, Update query);
@@ -67,4 +114,36 @@ public interface CassandraEntityConverter extends EntityReader<Object, Row> {
 
     String getColumn(String propertyPath, CassandraPersistentEntity persistentEntity);
 
+    /**
+     * Resolves the property once and returns the conversion of query parameter values to its column type.
+     *
+     * @param propertyPath dot separated property path
+     * @param persistentEntity entity
+     * @return converter of parameter values, null stays null
+     * @throws org.springframework.data.mapping.MappingException if there is no such property or it is encrypted
+     */
+    Function<Object, Object> getColumnValueConverter(String propertyPath, CassandraPersistentEntity persistentEntity);
+
+    /**
+     * Returns the columns needed to read the projection of the entity: the columns of the properties
+     * the projection declares, the crypto state columns of its encrypted properties and the columns of
+     * nested embedded entities. Open interface projections and supertypes of the entity need all columns.
+     *
+     * @param entityClass entity class
+     * @param projectionType interface or DTO class
+     * @return column names to select
+     */
+    List<String> getProjectionColumns(Class<?> entityClass, Class<?> projectionType);
+
+    /**
+     * Reads the projection from a row selected with {@link #getProjectionColumns(Class, Class)}.
+     * Properties without selected columns are not read, so their values are never decrypted.
+     *
+     * @param entityClass entity class
+     * @param projectionType interface or DTO class
+     * @param row row
+     * @return projection
+     */
+    <P> P readProjection(Class<?> entityClass, Class<P> projectionType, Row row);
+
 }
@@ -19,6 +19,9 @@ import com.datastax.driver.core.Row;
 import com.datastax.driver.core.querybuilder.*;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Maps;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.core.convert.support.GenericConversionService;
 import org.springframework.data.cassandra.crypto.transformer.bytes.BytesTransformerFactory;
 import org.springframework.data.cassandra.crypto.transformer.value.ValueDecryptor;
@@ -27,26 +30,40 @@ import org.springframework.data.cassandra.crypto.transformer.value.ValueTransfor
 import org.springframework.data.cassandra.mapping.CassandraMappingContext;
 import org.springframework.data.cassandra.mapping.CassandraPersistentEntity;
 import org.springframework.data.cassandra.mapping.CassandraPersistentProperty;
+import org.springframework.data.cassandra.mapping.NullWriteMode;
 import org.springframework.data.cassandra.util.ReturningCassandraPropertyHandler;
 import org.springframework.data.convert.EntityInstantiator;
 import org.springframework.data.convert.EntityInstantiators;
 import org.springframework.data.mapping.PersistentProperty;
+import org.springframework.data.mapping.PreferredConstructor;
 import org.springframework.data.mapping.PersistentPropertyAccessor;
 import org.springframework.data.mapping.PropertyHandler;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
 import org.springframework.data.mapping.MappingException;
 import org.springframework.data.mapping.model.PersistentEntityParameterValueProvider;
+import org.springframework.data.mapping.model.PreferredConstructorDiscoverer;
 import org.springframework.data.mapping.model.PropertyValueProvider;
+import org.springframework.data.projection.ProjectionInformation;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.data.util.ClassTypeInformation;
 import org.springframework.data.util.TypeInformation;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
+import java.beans.PropertyDescriptor;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * {@link CassandraEntityConverter} that uses a {@link MappingContext} to do sophisticated mapping of domain objects to
@@ -64,6 +81,9 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
     protected ConcurrentMap<Class, TypeInformation> typeInfoMap = Maps.newConcurrentMap();
     protected ValueTransformerFactory valueTransformerFactory;
     protected BytesTransformerFactory bytesTransformerFactory;
+    protected NullWriteMode nullWriteMode = NullWriteMode.NULL;
+    protected SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+    protected ConcurrentMap<List<Class<?>>, ProjectionMapping> projectionMappings = Maps.newConcurrentMap();
 
     /**
      * Creates default mapping converter
@@ -101,6 +121,20 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
         this.persistentTypeResolver = persistentTypeResolver;
     }
 
+    public NullWriteMode getNullWriteMode() {
+        return nullWriteMode;
+    }
+
+    /**
+     * Sets the null write mode of entities that do not declare one in {@link org.springframework.data.cassandra.mapping.Table}.
+     *
+     * @param nullWriteMode default mode, {@link NullWriteMode#NULL} keeps writing nulls
+     */
+    public void setNullWriteMode(NullWriteMode nullWriteMode) {
+        Assert.isTrue(nullWriteMode != null && nullWriteMode != NullWriteMode.DEFAULT, "nullWriteMode must be explicit");
+        this.nullWriteMode = nullWriteMode;
+    }
+
     public ValueTransformerFactory getValueTransformerFactory() {
         return valueTransformerFactory;
     }
@@ -226,6 +260,50 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
 
     @Override
     public void writeInsert(final Object source, final Insert query) {
+        if (getNullWriteMode(source.getClass()) == NullWriteMode.NULL) {
+            writeColumnValues(source, query::value, true);
+        } else {
+            writeColumnValues(source, nonNull(query::value), true);
+        }
+    }
+
+    @Override
+    public NullWriteMode getNullWriteMode(Class<?> clazz) {
+        final NullWriteMode entityMode = getPersistentEntity(clazz).getNullWriteMode();
+
+        return entityMode == NullWriteMode.DEFAULT ? nullWriteMode : entityMode;
+    }
+
+    private static BiConsumer<String, Object> nonNull(final BiConsumer<String, Object> columnWriter) {
+        return (column, value) -> {
+            if (value != null)
+                columnWriter.accept(column, value);
+        };
+    }
+
+    @Override
+    public Map<String, Object> getColumnValues(Object source) {
+        return getColumnValues(source, true);
+    }
+
+    @Override
+    public Map<String, Object> getPlainColumnValues(Object source) {
+        return getColumnValues(source, false);
+    }
+
+    private Map<String, Object> getColumnValues(Object source, boolean withCrypto) {
+        final Map<String, Object> columnValues = new LinkedHashMap<>();
+        if (getNullWriteMode(source.getClass()) == NullWriteMode.OMIT) {
+            writeColumnValues(source, nonNull(columnValues::put), withCrypto);
+        } else {
+            writeColumnValues(source, columnValues::put, withCrypto);
+        }
+
+        return columnValues;
+    }
+
+    private void writeColumnValues(final Object source, final BiConsumer<String, Object> columnWriter,
+                                   final boolean withCrypto) {
         final CassandraPersistentEntity persistentEntity = getPersistentEntity(source.getClass());
         final ConvertingPropertyAccessor accessor = getConvertingPropertyAccessor(source, persistentEntity);
 
@@ -237,10 +315,13 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
                 if (prop.isEntity()) {
                     if (value == null)
                         return;
-                    writeInsert(value, query);
+                    writeColumnValues(value, columnWriter, withCrypto);
                 } else if (prop.isCrypto()) {
+                    if (!withCrypto)
+                        return;
+
                     if (value == null) {
-                        query.value(prop.getColumnName(), value);
+                        columnWriter.accept(prop.getColumnName(), value);
                         return;
                     }
 
@@ -256,15 +337,15 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
                     if (tryCrypt) {
                         final ValueEncryptor valueEncryptor = valueTransformerFactory.encryptor(prop);
                         final Object encryptObj = valueEncryptor.encrypt(bytesTransformerFactory.encryptor(), value);
-                        query.value(prop.getColumnName(), encryptObj);
+                        columnWriter.accept(prop.getColumnName(), encryptObj);
                     } else if (tryEncode) {
                         final ValueEncryptor valueEncryptor = valueTransformerFactory.encryptor(prop);
-                        query.value(prop.getColumnName(), valueEncryptor.encode(value));
+                        columnWriter.accept(prop.getColumnName(), valueEncryptor.encode(value));
                     } else {
-                        query.value(prop.getColumnName(), value);
+                        columnWriter.accept(prop.getColumnName(), value);
                     }
                 } else {
-                    query.value(prop.getColumnName(), value);
+                    columnWriter.accept(prop.getColumnName(), value);
                 }
             }
         });
@@ -291,27 +372,37 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
         }
     }
 
+    @Override
+    public Map<String, Object> getIdColumnValues(Class<?> clazz, Object id) {
+        final Map<String, Object> columnValues = new LinkedHashMap<>();
+        writeIdColumnValues(clazz, id, columnValues::put);
+
+        return columnValues;
+    }
+
     private List<Clause> makeIdClauseList(Class<?> clazz, Object id) {
         final List<Clause> clauseList = new ArrayList<>();
 
+        writeIdColumnValues(clazz, id, (column, value) -> clauseList.add(QueryBuilder.eq(column, value)));
+
+        return clauseList;
+    }
+
+    private void writeIdColumnValues(Class<?> clazz, Object id, BiConsumer<String, Object> columnWriter) {
         final CassandraPersistentEntity persistentEntity = getPersistentEntity(clazz);
         final CassandraPersistentProperty idProperty = (CassandraPersistentProperty)persistentEntity.getIdProperty();
 
         if (idProperty.isEntity()) {
-            makeIdClauseListEntity(clauseList, id);
+            writeIdColumnValuesEntity(id, columnWriter);
         } else {
-            clauseList.add(
-                    QueryBuilder.eq(
-                            idProperty.getColumnName(),
-                            conversionService.convert(id, getPersistentPropertyType(idProperty))
-                    )
+            columnWriter.accept(
+                    idProperty.getColumnName(),
+                    conversionService.convert(id, getPersistentPropertyType(idProperty))
             );
         }
-
-        return clauseList;
     }
 
-    private void makeIdClauseListEntity(final List<Clause> clauseList, final Object value) {
+    private void writeIdColumnValuesEntity(final Object value, final BiConsumer<String, Object> columnWriter) {
         final CassandraPersistentEntity persistentEntity = getPersistentEntity(value.getClass());
         final ConvertingPropertyAccessor accessor = getConvertingPropertyAccessor(value, persistentEntity);
 
@@ -323,9 +414,9 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
                     return;
 
                 if (prop.isEntity()) {
-                    makeIdClauseListEntity(clauseList, convertedValue);
+                    writeIdColumnValuesEntity(convertedValue, columnWriter);
                 } else {
-                    clauseList.add(QueryBuilder.eq(prop.getColumnName(), convertedValue));
+                    columnWriter.accept(prop.getColumnName(), convertedValue);
                 }
             }
         });
@@ -385,6 +476,36 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
         return result;
     }
 
+    @Override
+    public Function<Object, Object> getColumnValueConverter(final String propertyPath,
+                                                            final CassandraPersistentEntity persistentEntity) {
+        Assert.hasText(propertyPath, "propertyPath");
+        Assert.notNull(persistentEntity, "persistentEntity");
+
+        CassandraPersistentEntity owner = persistentEntity;
+        CassandraPersistentProperty prop = null;
+        for (final String part: Splitter.on('.').split(propertyPath)) {
+            if (prop != null) {
+                if (!prop.isEntity())
+                    throw new MappingException("property for path=" + propertyPath + " not found");
+                owner = getPersistentEntity(prop.getActualType());
+            }
+
+            prop = (CassandraPersistentProperty) owner.getPersistentProperty(part);
+            if (prop == null)
+                throw new MappingException("property for path=" + propertyPath + " not found");
+        }
+
+        if (prop.isEntity())
+            throw new MappingException("path=" + propertyPath + " is an embedded entity, not a column");
+        if (prop.isCrypto())
+            throw new MappingException("encrypted property path=" + propertyPath + " can't be queried");
+
+        final Class<?> columnType = getPersistentPropertyType(prop);
+
+        return value -> value == null ? null : conversionService.convert(value, columnType);
+    }
+
     private String getColumn(final Iterator<String> parts, final CassandraPersistentEntity persistentEntity) {
         if (!parts.hasNext()) {
             return null;
@@ -412,6 +533,177 @@ public class MappingCassandraEntityConverter implements CassandraEntityConverter
         return propertyHandler.getResult();
     }
 
+    @Override
+    public List<String> getProjectionColumns(Class<?> entityClass, Class<?> projectionType) {
+        return getProjectionMapping(entityClass, projectionType).getColumns();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <P> P readProjection(Class<?> entityClass, Class<P> projectionType, Row row) {
+        return (P) getProjectionMapping(entityClass, projectionType).project(read(entityClass, row));
+    }
+
+    private ProjectionMapping getProjectionMapping(Class<?> entityClass, Class<?> projectionType) {
+        final List<Class<?>> key = Arrays.asList(entityClass, projectionType);
+
+        // not computeIfAbsent, nested projections are created while the mapping is computed
+        final ProjectionMapping mapping = projectionMappings.get(key);
+        if (mapping != null)
+            return mapping;
+
+        final ProjectionMapping created = createProjectionMapping(entityClass, projectionType);
+        final ProjectionMapping existing = projectionMappings.putIfAbsent(key, created);
+
+        return existing == null ? created : existing;
+    }
+
+    private ProjectionMapping createProjectionMapping(Class<?> entityClass, final Class<?> projectionType) {
+        final CassandraPersistentEntity persistentEntity = getPersistentEntity(entityClass);
+        if (persistentEntity == null)
+            throw new MappingException("No mapping metadata found for " + entityClass.getName());
+
+        final Set<String> columns = new LinkedHashSet<>();
+        addProjectionColumns(persistentEntity, projectionType, columns);
+
+        final Function<Object, Object> projector;
+        if (projectionType.isAssignableFrom(entityClass)) {
+            projector = Function.identity();
+        } else if (projectionType.isInterface()) {
+            projector = source -> projectionFactory.createProjection(projectionType, source);
+        } else {
+            projector = new DtoProjector(persistentEntity, projectionType);
+        }
+
+        return new ProjectionMapping(new ArrayList<>(columns), projector);
+    }
+
+    private void addProjectionColumns(final CassandraPersistentEntity persistentEntity, final Class<?> projectionType,
+                                      final Set<String> columns) {
+
+        final Map<String, Class<?>> projectionProperties = projectionType.isAssignableFrom(persistentEntity.getType())
+                ? null : getProjectionProperties(projectionType);
+
+        persistentEntity.doWithProperties(new PropertyHandler<CassandraPersistentProperty>() {
+            @Override
+            public void doWithPersistentProperty(CassandraPersistentProperty prop) {
+                final Class<?> targetType = projectionProperties == null
+                        ? prop.getType() : projectionProperties.get(prop.getName());
+                if (targetType == null)
+                    return;
+
+                if (prop.isEntity()) {
+                    final CassandraPersistentEntity embeddedEntity = getPersistentEntity(prop.getActualType());
+                    if (embeddedEntity == null)
+                        throw new MappingException("No mapping metadata found for " + prop.getRawType().getName());
+
+                    addProjectionColumns(embeddedEntity, targetType, columns);
+                } else {
+                    columns.add(prop.getColumnName());
+                    if (prop.isCrypto())
+                        columns.add(prop.getColumnCryptoState());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return property name -> type of the projection, null if all properties are needed
+     */
+    private Map<String, Class<?>> getProjectionProperties(Class<?> projectionType) {
+        final Map<String, Class<?>> properties = new LinkedHashMap<>();
+
+        if (projectionType.isInterface()) {
+            final ProjectionInformation information = projectionFactory.getProjectionInformation(projectionType);
+            if (!information.isClosed())
+                return null;
+
+            for (final PropertyDescriptor descriptor: information.getInputProperties()) {
+                properties.put(descriptor.getName(), descriptor.getPropertyType());
+            }
+        } else {
+            final PreferredConstructor<?, ?> constructor = PreferredConstructorDiscoverer.discover(projectionType);
+            if (constructor != null) {
+                for (final PreferredConstructor.Parameter<?, ?> parameter: constructor.getParameters()) {
+                    properties.put(parameter.getName(), parameter.getRawType());
+                }
+            }
+
+            for (final PropertyDescriptor descriptor: BeanUtils.getPropertyDescriptors(projectionType)) {
+                if (descriptor.getWriteMethod() != null)
+                    properties.put(descriptor.getName(), descriptor.getPropertyType());
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Creates a DTO with its preferred constructor and setters from the properties of the same name.
+     */
+    final private class DtoProjector implements Function<Object, Object> {
+        final private CassandraPersistentEntity persistentEntity;
+        final private PreferredConstructor<?, ?> constructor;
+        final private List<PropertyDescriptor> writableProperties = new ArrayList<>();
+
+        DtoProjector(CassandraPersistentEntity persistentEntity, Class<?> dtoType) {
+            this.persistentEntity = persistentEntity;
+            this.constructor = PreferredConstructorDiscoverer.discover(dtoType);
+            if (constructor == null)
+                throw new MappingException("No constructor found for projection " + dtoType.getName());
+
+            for (final PropertyDescriptor descriptor: BeanUtils.getPropertyDescriptors(dtoType)) {
+                if (descriptor.getWriteMethod() != null && !isConstructorParameter(descriptor.getName()))
+                    writableProperties.add(descriptor);
+            }
+        }
+
+        private boolean isConstructorParameter(String name) {
+            for (final PreferredConstructor.Parameter<?, ?> parameter: constructor.getParameters()) {
+                if (name.equals(parameter.getName()))
+                    return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public Object apply(Object source) {
+            final PersistentPropertyAccessor accessor = persistentEntity.getPropertyAccessor(source);
+
+            final Object[] args = new Object[constructor.getParameters().size()];
+            int i = 0;
+            for (final PreferredConstructor.Parameter<?, ?> parameter: constructor.getParameters()) {
+                args[i++] = getValue(accessor, parameter.getName(), parameter.getRawType());
+            }
+
+            final BeanWrapper wrapper = new BeanWrapperImpl(BeanUtils.instantiateClass(constructor.getConstructor(), args));
+            for (final PropertyDescriptor descriptor: writableProperties) {
+                final Object value = getValue(accessor, descriptor.getName(), descriptor.getPropertyType());
+                if (value != null)
+                    wrapper.setPropertyValue(descriptor.getName(), value);
+            }
+
+            return wrapper.getWrappedInstance();
+        }
+
+        private Object getValue(PersistentPropertyAccessor accessor, String name, Class<?> targetType) {
+            final CassandraPersistentProperty prop =
+                    (CassandraPersistentProperty) persistentEntity.getPersistentProperty(name);
+            if (prop == null)
+                return null;
+
+            final Object value = accessor.getProperty(prop);
+            if (value == null || ClassUtils.isAssignableValue(targetType, value))
+                return value;
+
+            if (prop.isEntity())
+                return getProjectionMapping(prop.getActualType(), targetType).project(value);
+
+            return conversionService.convert(value, targetType);
+        }
+    }
+
     private Object[] getConvertedIds(CassandraPersistentProperty idProperty, Iterable ids) {
         final ArrayList convertedIds = new ArrayList(20);
 
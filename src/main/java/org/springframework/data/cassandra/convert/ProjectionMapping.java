@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.convert;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Columns to select for a projection of an entity and the conversion of the partially read entity
+ * to the projection. Computed once per entity class and projection type.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class ProjectionMapping {
+    final private List<String> columns;
+    final private Function<Object, Object> projector;
+
+    ProjectionMapping(List<String> columns, Function<Object, Object> projector) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.projector = projector;
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+
+    Object project(Object entity) {
+        return entity == null ? null : projector.apply(entity);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ProjectionMapping{");
+        sb.append("columns=").append(columns);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -29,7 +29,13 @@ import com.datastax.driver.core.ProtocolOptions.Compression;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.policies.ReconnectionPolicy;
 import com.datastax.driver.core.policies.RetryPolicy;
+import com.datastax.driver.core.policies.NoSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+import org.springframework.data.cassandra.profile.ProfileSpeculativeExecutionPolicy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -55,6 +61,8 @@ public class CassandraClusterFactoryBean implements FactoryBean<Cluster>,
 	private LoadBalancingPolicy loadBalancingPolicy;
 	private ReconnectionPolicy reconnectionPolicy;
 	private RetryPolicy retryPolicy;
+	private SpeculativeExecutionPolicy speculativeExecutionPolicy;
+	private List<ExecutionProfile> executionProfiles = new ArrayList<>();
 	private AuthProvider authProvider;
 	private Compression compressionType;
 	private boolean metricsEnabled = true;
@@ -100,6 +108,13 @@ public class CassandraClusterFactoryBean implements FactoryBean<Cluster>,
         Optional.ofNullable(loadBalancingPolicy).ifPresent(builder::withLoadBalancingPolicy);
         Optional.ofNullable(reconnectionPolicy).ifPresent(builder::withReconnectionPolicy);
         Optional.ofNullable(retryPolicy).ifPresent(builder::withRetryPolicy);
+        if (executionProfiles.stream().anyMatch(p -> p.getSpeculativeExecutionPolicy() != null)) {
+            builder.withSpeculativeExecutionPolicy(new ProfileSpeculativeExecutionPolicy(
+                    Optional.ofNullable(speculativeExecutionPolicy).orElse(NoSpeculativeExecutionPolicy.INSTANCE),
+                    executionProfiles));
+        } else {
+            Optional.ofNullable(speculativeExecutionPolicy).ifPresent(builder::withSpeculativeExecutionPolicy);
+        }
         Optional.ofNullable(authProvider).ifPresent(builder::withAuthProvider);
         Optional.ofNullable(compressionType).ifPresent(builder::withCompression);
         if (!metricsEnabled)
@@ -153,6 +168,22 @@ public class CassandraClusterFactoryBean implements FactoryBean<Cluster>,
 		this.retryPolicy = retryPolicy;
 	}
 
+	public void setSpeculativeExecutionPolicy(SpeculativeExecutionPolicy speculativeExecutionPolicy) {
+		this.speculativeExecutionPolicy = speculativeExecutionPolicy;
+	}
+
+	public List<ExecutionProfile> getExecutionProfiles() {
+		return executionProfiles;
+	}
+
+	/**
+	 * Declares execution profiles, the same profiles are given to the template to be selected by name.
+	 * Speculative execution policies of the profiles are installed into the cluster.
+	 */
+	public void setExecutionProfiles(List<ExecutionProfile> executionProfiles) {
+		this.executionProfiles = executionProfiles;
+	}
+
 	public void setAuthProvider(AuthProvider authProvider) {
 		this.authProvider = authProvider;
 	}
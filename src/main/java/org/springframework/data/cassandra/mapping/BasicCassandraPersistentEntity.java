@@ -32,6 +32,7 @@ public class BasicCassandraPersistentEntity<T> extends BasicPersistentEntity<T,
         implements CassandraPersistentEntity<T> {
 
 	private final String table;
+	private final NullWriteMode nullWriteMode;
 
 	/**
 	 * Creates a new {@link BasicCassandraPersistentEntity} with the given {@link TypeInformation}. Will default the
@@ -48,8 +49,10 @@ public class BasicCassandraPersistentEntity<T> extends BasicPersistentEntity<T,
 		if (rawType.isAnnotationPresent(Table.class)) {
 			final Table d = rawType.getAnnotation(Table.class);
 			this.table = StringUtils.hasText(d.value()) ? d.value() : fallback;
+			this.nullWriteMode = d.nullWriteMode();
 		} else {
 			this.table = fallback;
+			this.nullWriteMode = NullWriteMode.DEFAULT;
 		}
 	}
 	
@@ -61,6 +64,10 @@ public class BasicCassandraPersistentEntity<T> extends BasicPersistentEntity<T,
 	public String getTable() {
 		return table;
 	}
+
+	public NullWriteMode getNullWriteMode() {
+		return nullWriteMode;
+	}
 	
 	/**
 	 * {@link Comparator} implementation inspecting the {@link CassandraPersistentProperty}'s order.
@@ -30,5 +30,12 @@ public interface CassandraPersistentEntity<T> extends PersistentEntity<T, Cassan
 	 * @return
 	 */
 	String getTable();
+
+	/**
+	 * Returns the null write mode of {@link Table}, {@link NullWriteMode#DEFAULT} if not declared.
+	 *
+	 * @return
+	 */
+	NullWriteMode getNullWriteMode();
 	
 }
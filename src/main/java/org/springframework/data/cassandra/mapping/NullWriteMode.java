@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.mapping;
+
+/**
+ * How null property values are written by inserts.
+ *
+ * @author Alexandr V Solomatin
+ */
+public enum NullWriteMode {
+    /**
+     * Use the mode of the converter, only meaningful in {@link Table}.
+     */
+    DEFAULT,
+    /**
+     * Nulls are written, every null column of an insert becomes a tombstone.
+     */
+    NULL,
+    /**
+     * Null columns are left out of inserts. Every distinct set of non-null columns
+     * has its own prepared statement.
+     */
+    OMIT,
+    /**
+     * Null columns are bound as unset values, one prepared insert per entity. Needs protocol v4 or later.
+     * Inserts with literal values omit null columns.
+     */
+    UNSET
+}
@@ -35,5 +35,10 @@ import org.springframework.data.annotation.Persistent;
 public @interface Table {
 
 	String value() default "";
-	
+
+	/**
+	 * How null properties of the entity are written, overrides the converter default.
+	 */
+	NullWriteMode nullWriteMode() default NullWriteMode.DEFAULT;
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link StatementMetrics} per {@link MetricTags} in memory. The summary is exported to JMX
+ * when the sink is a bean and annotation based MBean export is enabled.
+ *
+ * @author Alexandr V Solomatin
+ */
+@ManagedResource(description = "Cassandra statement metrics")
+public class HistogramMetricsSink implements MetricsSink {
+    final private ConcurrentMap<MetricTags, StatementMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(MetricTags tags, long latencyNanos, int rows, boolean pageFetch) {
+        StatementMetrics m = metrics.get(tags);
+        if (m == null) {
+            final StatementMetrics created = new StatementMetrics();
+            m = metrics.putIfAbsent(tags, created);
+            if (m == null)
+                m = created;
+        }
+
+        m.record(latencyNanos, rows, pageFetch);
+    }
+
+    /**
+     * @return metrics by tags
+     */
+    public Map<MetricTags, StatementMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * @return count, latency percentiles in milliseconds, rows and page fetches by tags
+     */
+    @ManagedAttribute(description = "Statement latencies in milliseconds, rows and page fetches")
+    public Map<String, String> getSummary() {
+        final Map<String, String> summary = new TreeMap<>();
+        for (final Map.Entry<MetricTags, StatementMetrics> e: metrics.entrySet()) {
+            final MetricTags tags = e.getKey();
+            final StatementMetrics m = e.getValue();
+
+            summary.put(tags.getTable() + ' ' + tags.getType() + ' ' + tags.getConsistencyLevel() + ' '
+                    + tags.getOutcome(), "count=" + m.getLatency().getCount()
+                    + " p50=" + millis(m.getLatency().getValueAtPercentile(50))
+                    + " p99=" + millis(m.getLatency().getValueAtPercentile(99))
+                    + " p999=" + millis(m.getLatency().getValueAtPercentile(99.9))
+                    + " max=" + millis(m.getLatency().getMaxNanos())
+                    + " rows=" + m.getRows() + " pageFetches=" + m.getPageFetches());
+        }
+
+        return summary;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("HistogramMetricsSink{");
+        sb.append("metrics=").append(metrics);
+        sb.append('}');
+        return sb.toString();
+    }
+}
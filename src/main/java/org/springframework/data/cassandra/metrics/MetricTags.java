@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.metrics;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import org.springframework.data.cassandra.util.StatementType;
+
+import java.util.Objects;
+
+/**
+ * Tags of a statement sample.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class MetricTags {
+    final public static String SUCCESS = "success";
+
+    final private String table;
+    final private StatementType type;
+    final private ConsistencyLevel consistencyLevel;
+    final private String outcome;
+
+    /**
+     * @param table "keyspace.table", null if unknown, e.g. for batches
+     * @param type type of the statement
+     * @param consistencyLevel consistency level set on the statement, null for the default
+     * @param outcome {@link #SUCCESS} or simple name of the exception class
+     */
+    public MetricTags(String table, StatementType type, ConsistencyLevel consistencyLevel, String outcome) {
+        this.table = table;
+        this.type = type;
+        this.consistencyLevel = consistencyLevel;
+        this.outcome = outcome;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public StatementType getType() {
+        return type;
+    }
+
+    public ConsistencyLevel getConsistencyLevel() {
+        return consistencyLevel;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final MetricTags that = (MetricTags) o;
+
+        return Objects.equals(table, that.table) && type == that.type
+                && consistencyLevel == that.consistencyLevel && Objects.equals(outcome, that.outcome);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(table, type, consistencyLevel, outcome);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("MetricTags{");
+        sb.append("table='").append(table).append('\'');
+        sb.append(", type=").append(type);
+        sb.append(", consistencyLevel=").append(consistencyLevel);
+        sb.append(", outcome='").append(outcome).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+}
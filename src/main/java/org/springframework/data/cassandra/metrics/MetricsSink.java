@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.metrics;
+
+/**
+ * Receives a sample for every statement executed by
+ * {@link org.springframework.data.cassandra.template.CassandraTemplateImpl}. Implementations publish them,
+ * e.g. to Micrometer timers or to histograms exported to JMX, see {@link HistogramMetricsSink}.
+ * The sink is called on the thread that completed the statement, often a driver I/O thread,
+ * so it must be fast and must not block.
+ *
+ * @author Alexandr V Solomatin
+ */
+public interface MetricsSink {
+    /**
+     * @param tags table, type, consistency level and outcome of the statement
+     * @param latencyNanos latency of the statement
+     * @param rows rows of the returned page, 0 if the statement failed
+     * @param pageFetch true if the statement fetched a next page, i.e. had a paging state
+     */
+    void record(MetricTags tags, long latencyNanos, int rows, boolean pageFetch);
+}
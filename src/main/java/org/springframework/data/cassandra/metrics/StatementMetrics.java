@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.metrics;
+
+import org.springframework.data.cassandra.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution, rows and page fetches of the statements with the same {@link MetricTags}.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class StatementMetrics {
+    final private LatencyHistogram latency = new LatencyHistogram();
+    final private LongAdder rows = new LongAdder();
+    final private LongAdder pageFetches = new LongAdder();
+
+    void record(long latencyNanos, int rows, boolean pageFetch) {
+        latency.record(latencyNanos);
+        this.rows.add(rows);
+        if (pageFetch)
+            pageFetches.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getPageFetches() {
+        return pageFetches.sum();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("StatementMetrics{");
+        sb.append("latency=").append(latency);
+        sb.append(", rows=").append(rows);
+        sb.append(", pageFetches=").append(pageFetches);
+        sb.append('}');
+        return sb.toString();
+    }
+}
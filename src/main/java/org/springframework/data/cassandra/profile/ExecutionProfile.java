@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.util.Assert;
+
+/**
+ * Named set of statement options. Profiles are declared on
+ * {@link org.springframework.data.cassandra.core.CassandraClusterFactoryBean} and on the template,
+ * repositories and their methods select one with {@link UseExecutionProfile}.
+ * Options left null keep the value already set on the statement.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class ExecutionProfile {
+    // statements applied by profiles with a slow query threshold, weak identity keys as in the router
+    final static private Cache<Statement, ExecutionProfile> appliedProfiles =
+            CacheBuilder.newBuilder().weakKeys().build();
+
+    private String name;
+    private ConsistencyLevel consistencyLevel;
+    private ConsistencyLevel serialConsistencyLevel;
+    private Integer readTimeoutMillis;
+    private Integer fetchSize;
+    private Boolean idempotent;
+    private SpeculativeExecutionPolicy speculativeExecutionPolicy;
+    private Long slowQueryThresholdMillis;
+
+    // set when the cluster routes speculative executions by profile
+    private volatile ProfileSpeculativeExecutionPolicy router;
+
+    /**
+     * Applies the options of the profile to the statement.
+     *
+     * @param statement statement to execute
+     */
+    public void apply(Statement statement) {
+        if (consistencyLevel != null)
+            statement.setConsistencyLevel(consistencyLevel);
+
+        if (serialConsistencyLevel != null)
+            statement.setSerialConsistencyLevel(serialConsistencyLevel);
+
+        if (readTimeoutMillis != null)
+            statement.setReadTimeoutMillis(readTimeoutMillis);
+
+        if (fetchSize != null)
+            statement.setFetchSize(fetchSize);
+
+        if (idempotent != null)
+            statement.setIdempotent(idempotent);
+
+        if (slowQueryThresholdMillis != null)
+            appliedProfiles.put(statement, this);
+
+        final ProfileSpeculativeExecutionPolicy r = router;
+        if (speculativeExecutionPolicy != null && r != null)
+            r.register(statement, speculativeExecutionPolicy);
+    }
+
+    /**
+     * @param statement statement
+     * @return profile with a slow query threshold applied to the statement, null if there is none
+     */
+    public static ExecutionProfile getAppliedProfile(Statement statement) {
+        return appliedProfiles.getIfPresent(statement);
+    }
+
+    void setRouter(ProfileSpeculativeExecutionPolicy router) {
+        this.router = router;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        Assert.hasText(name, "name");
+        this.name = name;
+    }
+
+    public ConsistencyLevel getConsistencyLevel() {
+        return consistencyLevel;
+    }
+
+    public void setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    public ConsistencyLevel getSerialConsistencyLevel() {
+        return serialConsistencyLevel;
+    }
+
+    public void setSerialConsistencyLevel(ConsistencyLevel serialConsistencyLevel) {
+        this.serialConsistencyLevel = serialConsistencyLevel;
+    }
+
+    public Integer getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(Integer readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Boolean getIdempotent() {
+        return idempotent;
+    }
+
+    public void setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    public SpeculativeExecutionPolicy getSpeculativeExecutionPolicy() {
+        return speculativeExecutionPolicy;
+    }
+
+    /**
+     * Speculative executions are started by the driver only for idempotent statements,
+     * the policy takes effect when the cluster is built by
+     * {@link org.springframework.data.cassandra.core.CassandraClusterFactoryBean} with this profile.
+     *
+     * @param speculativeExecutionPolicy policy of the statements of this profile
+     */
+    public void setSpeculativeExecutionPolicy(SpeculativeExecutionPolicy speculativeExecutionPolicy) {
+        this.speculativeExecutionPolicy = speculativeExecutionPolicy;
+    }
+
+    public Long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    /**
+     * @param slowQueryThresholdMillis threshold of the slow query log for the statements of this profile,
+     * null for the default threshold of the log
+     */
+    public void setSlowQueryThresholdMillis(Long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ExecutionProfile{");
+        sb.append("name='").append(name).append('\'');
+        sb.append(", consistencyLevel=").append(consistencyLevel);
+        sb.append(", serialConsistencyLevel=").append(serialConsistencyLevel);
+        sb.append(", readTimeoutMillis=").append(readTimeoutMillis);
+        sb.append(", fetchSize=").append(fetchSize);
+        sb.append(", idempotent=").append(idempotent);
+        sb.append(", speculativeExecutionPolicy=").append(speculativeExecutionPolicy);
+        sb.append(", slowQueryThresholdMillis=").append(slowQueryThresholdMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.framework.ProxyConfig;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Proxies beans with {@link UseExecutionProfile} methods, see {@link ExecutionProfileMethodInterceptor}.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class ExecutionProfileAnnotationBeanPostProcessor extends ProxyConfig implements BeanPostProcessor,
+        BeanClassLoaderAware {
+
+    final private static Logger log = LoggerFactory.getLogger(ExecutionProfileAnnotationBeanPostProcessor.class);
+
+    final private Pointcut pointcut = new AnnotationMatchingPointcut(null, UseExecutionProfile.class);
+
+    private ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof AopInfrastructureBean) {
+            return bean;
+        }
+
+        final Class<?> targetClass = AopUtils.getTargetClass(bean);
+
+        if (!AopUtils.canApply(pointcut, targetClass)) {
+            return bean;
+        }
+
+        final ExecutionProfileMethodInterceptor interceptor = new ExecutionProfileMethodInterceptor(targetClass);
+        final PointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, interceptor);
+
+        if (bean instanceof Advised) {
+            if (log.isDebugEnabled()) {
+                log.debug("Bean " + beanName + " is already proxied, adding Advisor to existing proxy");
+            }
+
+            ((Advised) bean).addAdvisor(0, advisor);
+            return bean;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Proxying bean " + beanName + " of type " + targetClass.getCanonicalName());
+        }
+
+        final ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.copyFrom(this);
+        proxyFactory.addAdvisor(advisor);
+
+        return proxyFactory.getProxy(beanClassLoader);
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.beanClassLoader = classLoader;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+/**
+ * Execution profile selected for the current thread by a {@link UseExecutionProfile} method.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class ExecutionProfileContext {
+    final static private ThreadLocal<String> current = new ThreadLocal<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ExecutionProfileContext() {}
+
+    /**
+     * @return profile name of the current thread or null
+     */
+    public static String get() {
+        return current.get();
+    }
+
+    /**
+     * Selects the profile for the current thread.
+     *
+     * @param name profile name, null clears the selection
+     * @return previously selected profile name to restore
+     */
+    public static String set(String name) {
+        final String previous = current.get();
+        if (name == null) {
+            current.remove();
+        } else {
+            current.set(name);
+        }
+
+        return previous;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the profile of a {@link UseExecutionProfile} method for the time of its invocation.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class ExecutionProfileMethodInterceptor implements MethodInterceptor, Ordered {
+    final private Class<?> targetClass;
+    final private Map<Method, String> profileNames = new ConcurrentHashMap<>();
+
+    public ExecutionProfileMethodInterceptor(Class<?> targetClass) {
+        this.targetClass = targetClass;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        final String name = profileNames.computeIfAbsent(invocation.getMethod(), this::determineProfileName);
+        if (name.isEmpty())
+            return invocation.proceed();
+
+        final String previous = ExecutionProfileContext.set(name);
+        try {
+            return invocation.proceed();
+        } finally {
+            ExecutionProfileContext.set(previous);
+        }
+    }
+
+    private String determineProfileName(Method method) {
+        final Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        final UseExecutionProfile ann = AnnotationUtils.findAnnotation(specificMethod, UseExecutionProfile.class);
+
+        return ann == null ? "" : ann.value();
+    }
+
+    @Override
+    public int getOrder() {
+        return HIGHEST_PRECEDENCE;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Cluster wide {@link SpeculativeExecutionPolicy} that lets every execution profile have its own policy.
+ * The driver has a single policy per cluster, so profiles register their statements here
+ * and the plan is created by the policy of the profile the statement was built with.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class ProfileSpeculativeExecutionPolicy implements SpeculativeExecutionPolicy {
+    final private SpeculativeExecutionPolicy defaultPolicy;
+    final private Set<SpeculativeExecutionPolicy> profilePolicies = Collections.newSetFromMap(new IdentityHashMap<>());
+    // weak identity keys, statements are forgotten once executed and collected
+    final private Cache<Statement, SpeculativeExecutionPolicy> statementPolicies =
+            CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * @param defaultPolicy policy of statements without a profile policy
+     * @param profiles profiles, their policies are routed by this policy
+     */
+    public ProfileSpeculativeExecutionPolicy(SpeculativeExecutionPolicy defaultPolicy,
+                                             Collection<ExecutionProfile> profiles) {
+        this.defaultPolicy = defaultPolicy;
+
+        for (final ExecutionProfile profile: profiles) {
+            if (profile.getSpeculativeExecutionPolicy() != null) {
+                profilePolicies.add(profile.getSpeculativeExecutionPolicy());
+                profile.setRouter(this);
+            }
+        }
+        profilePolicies.remove(defaultPolicy);
+    }
+
+    void register(Statement statement, SpeculativeExecutionPolicy policy) {
+        statementPolicies.put(statement, policy);
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        defaultPolicy.init(cluster);
+        for (final SpeculativeExecutionPolicy policy: profilePolicies) {
+            policy.init(cluster);
+        }
+    }
+
+    @Override
+    public SpeculativeExecutionPlan newPlan(String loggedKeyspace, Statement statement) {
+        final SpeculativeExecutionPolicy policy = statementPolicies.getIfPresent(statement);
+
+        return (policy == null ? defaultPolicy : policy).newPlan(loggedKeyspace, statement);
+    }
+
+    @Override
+    public void close() {
+        defaultPolicy.close();
+        for (final SpeculativeExecutionPolicy policy: profilePolicies) {
+            policy.close();
+        }
+    }
+}
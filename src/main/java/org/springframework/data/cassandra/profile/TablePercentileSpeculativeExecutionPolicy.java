@@ -0,0 +1,195 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.NoSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import org.springframework.data.cassandra.util.LatencyHistogram;
+import org.springframework.data.cassandra.util.StatementType;
+import org.springframework.data.cassandra.util.StatementUtils;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hedged reads: a speculative execution of a SELECT is started when the statement is slower than the given percentile
+ * of the latencies of its table. Latencies of successful executions are recorded per table in intervals,
+ * the delay is the percentile of the last completed interval. Until a table has minRecordedValues
+ * in an interval no speculative execution is started for it.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class TablePercentileSpeculativeExecutionPolicy implements SpeculativeExecutionPolicy, LatencyTracker {
+    final private double percentile;
+    final private int maxSpeculativeExecutions;
+    final private ConcurrentMap<String, TableLatency> tables = new ConcurrentHashMap<>();
+    private long minRecordedValues = 100;
+    private long intervalNanos = TimeUnit.SECONDS.toNanos(5);
+    private volatile Cluster cluster;
+
+    /**
+     * @param percentile percentile of the table latency after which the next execution starts, e.g. 99
+     * @param maxSpeculativeExecutions maximum number of speculative executions of a statement
+     */
+    public TablePercentileSpeculativeExecutionPolicy(double percentile, int maxSpeculativeExecutions) {
+        Assert.isTrue(percentile > 0 && percentile < 100, "percentile must be between 0 and 100");
+        Assert.isTrue(maxSpeculativeExecutions > 0, "maxSpeculativeExecutions must be positive");
+
+        this.percentile = percentile;
+        this.maxSpeculativeExecutions = maxSpeculativeExecutions;
+    }
+
+    /**
+     * @param minRecordedValues latencies a table needs in an interval to compute the delay, 100 by default
+     */
+    public void setMinRecordedValues(long minRecordedValues) {
+        Assert.isTrue(minRecordedValues > 0, "minRecordedValues must be positive");
+        this.minRecordedValues = minRecordedValues;
+    }
+
+    /**
+     * @param intervalMillis length of the interval the percentile is computed for, 5 seconds by default
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        Assert.isTrue(intervalMillis > 0, "intervalMillis must be positive");
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        this.cluster = cluster;
+        cluster.register(this);
+    }
+
+    @Override
+    public SpeculativeExecutionPlan newPlan(String loggedKeyspace, Statement statement) {
+        // writes are not hedged, even idempotent ones would be applied twice
+        if (StatementUtils.getType(statement) != StatementType.SELECT)
+            return NoSpeculativeExecutionPolicy.INSTANCE.newPlan(loggedKeyspace, statement);
+
+        final String table = StatementUtils.getTable(statement);
+        final TableLatency latency = table == null ? null : tables.get(table);
+        final long delayMillis = latency == null ? -1 : latency.getDelayMillis();
+
+        return new SpeculativeExecutionPlan() {
+            private int remaining = maxSpeculativeExecutions;
+
+            @Override
+            public long nextExecution(Host lastQueried) {
+                if (delayMillis < 0 || remaining <= 0)
+                    return -1;
+
+                remaining--;
+                return delayMillis;
+            }
+        };
+    }
+
+    /**
+     * @param table "keyspace.table"
+     * @return current delay of the speculative executions in milliseconds, -1 if they are not started
+     */
+    public long getDelayMillis(String table) {
+        final TableLatency latency = tables.get(table);
+
+        return latency == null ? -1 : latency.getDelayMillis();
+    }
+
+    @Override
+    public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+        // failed executions, e.g. timeouts, and writes would skew the percentile
+        if (exception != null || StatementUtils.getType(statement) != StatementType.SELECT)
+            return;
+
+        final String table = StatementUtils.getTable(statement);
+        if (table == null)
+            return;
+
+        TableLatency latency = tables.get(table);
+        if (latency == null) {
+            final TableLatency created = new TableLatency();
+            latency = tables.putIfAbsent(table, created);
+            if (latency == null)
+                latency = created;
+        }
+
+        latency.record(newLatencyNanos);
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+        // registered in init
+    }
+
+    @Override
+    public void onUnregister(Cluster cluster) {
+        // unregistered in close
+    }
+
+    @Override
+    public void close() {
+        final Cluster c = cluster;
+        if (c != null)
+            c.unregister(this);
+    }
+
+    final private class TableLatency {
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile long intervalStart = System.nanoTime();
+        private volatile long delayMillis = -1;
+
+        void record(long latencyNanos) {
+            final long now = System.nanoTime();
+            if (now - intervalStart >= intervalNanos)
+                rotate(now);
+
+            current.record(latencyNanos);
+        }
+
+        private synchronized void rotate(long now) {
+            if (now - intervalStart < intervalNanos)
+                return;
+
+            final LatencyHistogram completed = current;
+            current = new LatencyHistogram();
+            intervalStart = now;
+
+            delayMillis = completed.getCount() < minRecordedValues ? -1
+                    : Math.max(1, TimeUnit.NANOSECONDS.toMillis(completed.getValueAtPercentile(percentile)));
+        }
+
+        long getDelayMillis() {
+            return delayMillis;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TablePercentileSpeculativeExecutionPolicy{");
+        sb.append("percentile=").append(percentile);
+        sb.append(", maxSpeculativeExecutions=").append(maxSpeculativeExecutions);
+        sb.append(", minRecordedValues=").append(minRecordedValues);
+        sb.append(", intervalNanos=").append(intervalNanos);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import java.lang.annotation.*;
+
+/**
+ * Selects the {@link ExecutionProfile} of the statements built by a repository.
+ * On a repository class it changes the default of all its methods, on a method it
+ * applies while the method runs and needs {@link ExecutionProfileAnnotationBeanPostProcessor}.
+ *
+ * @author Alexandr V Solomatin
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface UseExecutionProfile {
+    /**
+     * Execution profile name
+     *
+     * @return
+     */
+    String value();
+
+}
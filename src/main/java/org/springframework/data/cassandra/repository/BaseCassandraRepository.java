@@ -16,22 +16,49 @@
 package org.springframework.data.cassandra.repository;
 
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.reactivestreams.Publisher;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
 import org.springframework.data.cassandra.convert.CassandraEntityConverter;
 import org.springframework.data.cassandra.core.CassandraExceptionTranslator;
 import org.springframework.data.cassandra.mapping.CassandraPersistentEntity;
+import org.springframework.data.cassandra.mapping.CassandraPersistentProperty;
+import org.springframework.data.cassandra.mapping.NullWriteMode;
+import org.springframework.data.cassandra.profile.ExecutionProfileContext;
+import org.springframework.data.cassandra.profile.UseExecutionProfile;
 import org.springframework.data.cassandra.template.CassandraTemplate;
+import org.springframework.data.cassandra.template.WriteCoalescer;
+import org.springframework.data.cassandra.util.ConcurrencyUtils;
+import org.springframework.data.domain.Pageable;
 import com.datastax.driver.core.querybuilder.*;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.util.Assert;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Date: 28.01.14 17:27
@@ -40,10 +67,34 @@ import java.util.function.Function;
  */
 abstract public class BaseCassandraRepository<T, ID extends Serializable> implements CassandraRepository<T, ID> {
     final static private PersistenceExceptionTranslator EXCEPTION_TRANSLATOR = new CassandraExceptionTranslator();
+    final static private int DEFAULT_PARTITION_BATCH_SIZE = 100;
+    final static private int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 32;
+    // set while a statement to prepare is built, see withoutExecutionProfile
+    final static private ThreadLocal<Boolean> buildingPrepared = new ThreadLocal<>();
 
     protected CassandraTemplate template;
     protected CassandraEntityConverter converter;
     protected CassandraPersistentEntity persistentEntity;
+    protected PreparedStatementCache preparedStatementCache = new PreparedStatementCache();
+    protected int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    protected int fetchSize;
+    protected int multiGetChunkSize;
+    protected int partitionBatchSize = DEFAULT_PARTITION_BATCH_SIZE;
+    protected WriteCoalescer writeCoalescer;
+    protected CountMode countMode = CountMode.SINGLE_QUERY;
+    protected TokenRangeCountOptions tokenRangeCountOptions = new TokenRangeCountOptions();
+    protected boolean dirtyTracking;
+    protected Executor mappingExecutor = MoreExecutors.directExecutor();
+    // column values of the entities as last read or written, weak identity keys
+    final protected Cache<Object, Map<String, Object>> snapshots = CacheBuilder.newBuilder().weakKeys().build();
+    private EntityCache<Row> entityCache;
+    private boolean entityCacheDecrypted;
+    // lazily computed, see entityCache()
+    private Boolean encryptedEntity;
+    protected String executionProfileName = Optional
+            .ofNullable(AnnotationUtils.findAnnotation(getClass(), UseExecutionProfile.class))
+            .map(UseExecutionProfile::value)
+            .orElse(null);
 
     public void setTemplate(CassandraTemplate template) {
         this.template = template;
@@ -54,6 +105,149 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         persistentEntity = converter.getMappingContext().getPersistentEntity(getEntityClass());
     }
 
+    public void setPreparedStatementCache(PreparedStatementCache preparedStatementCache) {
+        this.preparedStatementCache = preparedStatementCache;
+    }
+
+    /**
+     * Limits the number of concurrent requests issued by multi-entity operations,
+     * e.g. findAllById with composite ids.
+     *
+     * @param maxInFlightRequests positive number
+     */
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        Assert.isTrue(maxInFlightRequests > 0, "maxInFlightRequests must be positive");
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    /**
+     * Fetch size of the multi-row selects built by {@link #baseSelect()}, 0 means the driver default.
+     *
+     * @param fetchSize rows per page
+     */
+    public void setFetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize >= 0, "fetchSize must not be negative");
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Splits findAllById and findAllAsync(ids) of simple ids into concurrent queries of at most
+     * multiGetChunkSize ids, at most maxInFlightRequests in flight. Ids of one query have the same
+     * replicas and the query is routed to them, so no coordinator fans out to other replica sets.
+     * 1 issues single-partition queries, 0 sends one IN query of all ids.
+     *
+     * @param multiGetChunkSize ids per query
+     */
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        Assert.isTrue(multiGetChunkSize >= 0, "multiGetChunkSize must not be negative");
+        this.multiGetChunkSize = multiGetChunkSize;
+    }
+
+    /**
+     * Limits the number of statements of one partition batch of saveAllByPartitionAsync
+     * and deleteAllByPartitionAsync, larger groups are split.
+     *
+     * @param partitionBatchSize positive number
+     */
+    public void setPartitionBatchSize(int partitionBatchSize) {
+        Assert.isTrue(partitionBatchSize > 0, "partitionBatchSize must be positive");
+        this.partitionBatchSize = partitionBatchSize;
+    }
+
+    /**
+     * Sends saveAsync and deleteAsync(id) writes through the coalescer, outside of a batch of the template.
+     *
+     * @param writeCoalescer coalescer, null sends every write at once
+     */
+    public void setWriteCoalescer(WriteCoalescer writeCoalescer) {
+        this.writeCoalescer = writeCoalescer;
+    }
+
+    /**
+     * Executor of the row mapping of asynchronous operations: conversion, decryption and afterFetch.
+     * By default rows are mapped on the driver I/O thread that completed the query, which stalls the other
+     * requests of its connections when mapping is heavy, e.g. decryption of {@code @Crypto} columns.
+     * A {@link java.util.concurrent.ForkJoinPool} keeps the I/O threads free. Publishers map and deliver
+     * the rows of every page on this executor too. Results returned as lazy iterables, e.g. of findAllAsync,
+     * are mapped on the thread that iterates them.
+     *
+     * @param mappingExecutor executor, must not reject tasks while the repository is used
+     */
+    public void setMappingExecutor(Executor mappingExecutor) {
+        Assert.notNull(mappingExecutor, "mappingExecutor");
+        this.mappingExecutor = mappingExecutor;
+    }
+
+    /**
+     * Overrides the profile of the {@link UseExecutionProfile} annotation of the repository class.
+     *
+     * @param executionProfileName profile name, null means the default options
+     */
+    public void setExecutionProfileName(String executionProfileName) {
+        this.executionProfileName = executionProfileName;
+    }
+
+    /**
+     * Enables partial updates: entities read by this repository remember their column values
+     * and save writes only the changed columns with an UPDATE. Entities that were not read,
+     * or whose id changed, are still written with a full INSERT. Encrypted columns are
+     * written on every save, their ciphertext differs each time.
+     *
+     * @param dirtyTracking true to enable
+     */
+    public void setDirtyTracking(boolean dirtyTracking) {
+        this.dirtyTracking = dirtyTracking;
+        if (!dirtyTracking)
+            snapshots.invalidateAll();
+    }
+
+    /**
+     * Enables the near cache of findById and findOneAsync. Saved and deleted entities are evicted,
+     * so only writes made through other repositories or clients may be served stale until the entry
+     * expires. The cache keeps the rows as read, every hit maps a new entity that the caller may change.
+     *
+     * @param entityCacheOptions options, null disables the cache
+     */
+    public void setEntityCacheOptions(EntityCacheOptions entityCacheOptions) {
+        entityCache = entityCacheOptions == null ? null : new EntityCache<>(entityCacheOptions);
+        entityCacheDecrypted = entityCacheOptions != null && entityCacheOptions.isCacheDecrypted();
+    }
+
+    /**
+     * @return hit, miss and eviction counts of the near cache, zeros if it is disabled
+     */
+    public CacheStats getEntityCacheStats() {
+        return entityCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : entityCache.stats();
+    }
+
+    public void setCountMode(CountMode countMode) {
+        Assert.notNull(countMode, "countMode");
+        this.countMode = countMode;
+    }
+
+    public void setTokenRangeCountOptions(TokenRangeCountOptions tokenRangeCountOptions) {
+        Assert.notNull(tokenRangeCountOptions, "tokenRangeCountOptions");
+        this.tokenRangeCountOptions = tokenRangeCountOptions;
+    }
+
+    /**
+     * Implements a query interface. Methods are derived queries, e.g. findByIdIn,
+     * countByIdIn, existsById, deleteByIdIn, or carry a {@link Query}. Every method is parsed,
+     * validated against the mapping and prepared here, so call it once after the template and
+     * converter are set and keep the result. Delete and @Query write methods evict the whole near cache
+     * and the dirty tracking snapshots, the rows they change are not known.
+     * A derived delete must restrict the whole partition key by equality or IN and only primary key
+     * columns, the criteria of a derived select must be key or indexed columns unless the method
+     * carries {@link AllowFiltering}.
+     *
+     * @param queriesInterface interface of query methods
+     * @return implementation executing the prepared statements
+     * @throws IllegalArgumentException if a method can't be mapped to CQL
+     */
+    protected <Q> Q createQueries(Class<Q> queriesInterface) {
+        return RepositoryQueries.create(queriesInterface, this);
+    }
+
     abstract protected Class<?> getEntityClass();
 
     protected void beforeInsert(T entity) {
@@ -66,80 +260,248 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
 
     @Override
     public <S extends T> S save(S entity) {
-        final Insert query = baseInsert();
-
         beforeInsert(entity);
-        converter.writeInsert(entity, query);
-        template.execute(query);
+
+        final Map<String, Object> values = converter.getColumnValues(entity);
+        final BoundStatement statement = bindSave(entity, values);
+        if (statement != null)
+            template.execute(statement);
+
+        trackSaved(entity, values);
+        cacheSaved(entity);
 
         return entity;
     }
 
     @Override
     public <S extends T> CompletableFuture<S> saveAsync(final S entity) {
-        final Insert query = baseInsert();
-
         beforeInsert(entity);
-        converter.writeInsert(entity, query);
 
-        return executeQueryAsyncAndTransformResult(query, rs -> entity);
+        final Map<String, Object> values = converter.getColumnValues(entity);
+        final BoundStatement statement = bindSave(entity, values);
+        if (statement == null)
+            return CompletableFuture.completedFuture(entity);
+
+        return executeWriteAsync(statement, () -> {
+            trackSaved(entity, values);
+            cacheSaved(entity);
+            return entity;
+        });
     }
 
     @Override
     public <S extends T> Iterable<S> saveAll(Iterable<S> entities) {
+        if (template.isBatchStarted()) {
+            // statements must reach the batch in the calling thread
+            for (final S entity: entities) {
+                save(entity);
+            }
+
+            return entities;
+        }
+
+        return waitFor(saveAllAsync(entities));
+    }
+
+    /**
+     * Keeps at most maxInFlightRequests inserts in flight, entities are taken from the iterable
+     * only when a slot is free. Failed entities do not stop the rest, they are reported
+     * with {@link BulkWriteException} once all writes are done. Within a batch of the template
+     * the entities are saved one by one into it.
+     */
+    @Override
+    public <S extends T> CompletableFuture<Iterable<S>> saveAllAsync(Iterable<S> entities) {
+        if (template.isBatchStarted())
+            return CompletableFuture.completedFuture(saveAll(entities));
+
+        return ConcurrencyUtils.mapAsync(entities, maxInFlightRequests, withCurrentExecutionProfile(this::saveAsyncOutcome))
+                .thenApply(outcomes -> {
+                    final List<S> saved = new ArrayList<>(outcomes.size());
+                    final List<BulkWriteException.Failure> failures = new ArrayList<>();
+
+                    for (final Map.Entry<S, Throwable> outcome: outcomes) {
+                        if (outcome.getValue() == null) {
+                            saved.add(outcome.getKey());
+                        } else {
+                            failures.add(new BulkWriteException.Failure(outcome.getKey(), outcome.getValue()));
+                        }
+                    }
+
+                    if (!failures.isEmpty())
+                        throw new BulkWriteException(failures, saved.size());
+
+                    return saved;
+                });
+    }
+
+    /**
+     * Within a batch of the template the entities are saved one by one into it.
+     */
+    @Override
+    public <S extends T> CompletableFuture<Iterable<S>> saveAllByPartitionAsync(Iterable<S> entities) {
+        if (template.isBatchStarted())
+            return CompletableFuture.completedFuture(saveAll(entities));
+
+        final Map<S, Map<String, Object>> values = new IdentityHashMap<>();
+        final List<Map.Entry<S, BoundStatement>> writes = new ArrayList<>();
         for (final S entity: entities) {
-            save(entity);
+            beforeInsert(entity);
+
+            final Map<String, Object> entityValues = converter.getColumnValues(entity);
+            final BoundStatement statement = bindSave(entity, entityValues);
+            if (statement != null) {
+                values.put(entity, entityValues);
+                writes.add(new AbstractMap.SimpleImmutableEntry<>(entity, statement));
+            }
         }
 
-        return entities;
+        return writeByPartition(writes, entity -> {
+            trackSaved(entity, values.get(entity));
+            cacheSaved(entity);
+        }).thenApply(v -> entities);
+    }
+
+    /**
+     * Groups the writes by the routing key of their statements and sends every group as an unlogged batch
+     * of at most partitionBatchSize statements, at most maxInFlightRequests batches at a time.
+     *
+     * @param writes entities and their statements
+     * @param written called for every written entity
+     * @return future failed with {@link BulkWriteException} if some entities were not written
+     */
+    protected <E> CompletableFuture<Void> writeByPartition(List<Map.Entry<E, BoundStatement>> writes,
+                                                           Consumer<E> written) {
+        final Map<Object, List<Map.Entry<E, BoundStatement>>> partitions = new LinkedHashMap<>();
+        for (final Map.Entry<E, BoundStatement> write: writes) {
+            final ByteBuffer routingKey = write.getValue()
+                    .getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+            // without a routing key the statement is sent alone
+            partitions.computeIfAbsent(routingKey == null ? new Object() : routingKey, k -> new ArrayList<>())
+                    .add(write);
+        }
+
+        final List<List<Map.Entry<E, BoundStatement>>> groups = new ArrayList<>();
+        for (final List<Map.Entry<E, BoundStatement>> partition: partitions.values()) {
+            groups.addAll(Lists.partition(partition, partitionBatchSize));
+        }
+
+        return ConcurrencyUtils.mapAsync(groups, maxInFlightRequests, withCurrentExecutionProfile(group -> {
+            final Statement statement;
+            if (group.size() == 1) {
+                statement = group.get(0).getValue();
+            } else {
+                final BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                for (final Map.Entry<E, BoundStatement> write: group) {
+                    batch.add(write.getValue());
+                }
+                queryWriteOptions(batch);
+                statement = batch;
+            }
+
+            CompletableFuture<Void> future;
+            try {
+                future = executeQueryAsyncAndTransformResult(statement, rs -> null);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+
+            return future.handle((r, t) -> Optional.ofNullable(t));
+        })).thenAccept(outcomes -> {
+            final List<BulkWriteException.Failure> failures = new ArrayList<>();
+            int succeeded = 0;
+
+            for (int i = 0; i < groups.size(); i++) {
+                final Optional<Throwable> failure = outcomes.get(i);
+                for (final Map.Entry<E, BoundStatement> write: groups.get(i)) {
+                    if (failure.isPresent()) {
+                        failures.add(new BulkWriteException.Failure(write.getKey(), failure.get()));
+                    } else {
+                        written.accept(write.getKey());
+                        succeeded++;
+                    }
+                }
+            }
+
+            if (!failures.isEmpty())
+                throw new BulkWriteException(failures, succeeded);
+        });
+    }
+
+    private <S extends T> CompletableFuture<Map.Entry<S, Throwable>> saveAsyncOutcome(S entity) {
+        CompletableFuture<S> future;
+        try {
+            future = saveAsync(entity);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((r, t) -> new AbstractMap.SimpleImmutableEntry<>(entity, t));
     }
 
     @Override
     public Optional<T> findById(ID id) {
-        final Select query = baseSelect();
+        final EntityCache<Row> cache = entityCache();
+        final Row cached = cache == null ? null : cache.get(id);
+        if (cached != null)
+            return Optional.of(readEntity(cached));
 
-        converter.writeIdClause(getEntityClass(), id, query);
-
-        return Optional.ofNullable(getByQuery(query));
+        final long generation = cache == null ? 0 : cache.generation(id);
+        return Optional.ofNullable(cacheLoaded(id, template.execute(bindSelectById(id)), generation));
     }
 
     @Override
     public Optional<T> findById(ID id, ConsistencyLevel level) {
-        final Select query = baseSelect();
+        final BoundStatement query = bindSelectById(id);
         query.setConsistencyLevel(level);
 
-        converter.writeIdClause(getEntityClass(), id, query);
-
         return Optional.ofNullable(getByQuery(query));
     }
 
     @Override
     public CompletableFuture<T> findOneAsync(ID id) {
-        final Select query = baseSelect();
-
-        converter.writeIdClause(getEntityClass(), id, query);
+        final EntityCache<Row> cache = entityCache();
+        final Row cached = cache == null ? null : cache.get(id);
+        if (cached != null) {
+            final CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                result.complete(readEntity(cached));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
 
-        return executeQueryAsyncAndTransformResult(query, this::getByResultSet);
+        final long generation = cache == null ? 0 : cache.generation(id);
+        return executeQueryAsyncAndTransformResult(bindSelectById(id), rs -> cacheLoaded(id, rs, generation));
     }
 
     @Override
-    public boolean existsById(ID id) {
-        final Select query = QueryBuilder.select().countAll().from(getTable());
+    public <P> Optional<P> findById(ID id, Class<P> projection) {
+        final Map<String, Object> idValues = converter.getIdColumnValues(getEntityClass(), id);
+
+        final PreparedStatement prepared = preparedStatementCache.get(getEntityClass(), projection,
+                PreparedStatementCache.Operation.SELECT, idValues.keySet(),
+                () -> template.prepare(withoutExecutionProfile(
+                        () -> whereColumnsEq(baseSelect(projection), idValues.keySet()))));
+
+        final BoundStatement query = prepared.bind(idValues.values().toArray());
         queryReadOptions(query);
 
-        converter.writeIdClause(getEntityClass(), id, query);
+        final ResultSet rs = template.execute(query);
 
-        return !template.execute(query).isExhausted();
+        return rs.isExhausted() ? Optional.empty() : Optional.ofNullable(readProjection(projection, rs.one()));
     }
 
     @Override
-    public CompletableFuture<Boolean> existsAsync(ID id) {
-        final Select query = QueryBuilder.select().countAll().from(getTable());
-        queryReadOptions(query);
-
-        converter.writeIdClause(getEntityClass(), id, query);
+    public boolean existsById(ID id) {
+        return !template.execute(bindExistsById(id)).isExhausted();
+    }
 
-        return executeQueryAsyncAndTransformResult(query, rs -> !rs.isExhausted());
+    @Override
+    public CompletableFuture<Boolean> existsAsync(ID id) {
+        return executeQueryAsyncAndTransformResult(bindExistsById(id), rs -> !rs.isExhausted());
     }
 
     @Override
@@ -157,15 +519,65 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
     }
 
     @Override
-    public Iterable<T> findAllById(Iterable<ID> ids) {
-        if (persistentEntity.getIdProperty().isEntity()) {
-            // ID is complex, need multiple requests
-            final ArrayList<T> result = new ArrayList<>(20);
-            for (final ID id: ids) {
-                findById(id).ifPresent(result::add);
-            }
+    public <P> Iterable<P> findAll(Class<P> projection) {
+        return getListByQuery(baseSelect(projection), projection);
+    }
 
-            return result;
+    @Override
+    public <P> CompletableFuture<Iterable<P>> findAllAsync(Class<P> projection) {
+        return executeQueryAsyncAndTransformResult(baseSelect(projection),
+                rs -> getListByResultSet(rs, projection));
+    }
+
+    @Override
+    public Publisher<T> findAllPublisher() {
+        return getPublisherByQuery(baseSelect());
+    }
+
+    @Override
+    public CassandraSlice<T> findAll(Pageable pageable) {
+        final Statement query = pagedQuery(baseSelect(), pageable);
+
+        return getSliceByResultSet(template.execute(query), pageable);
+    }
+
+    @Override
+    public CompletableFuture<CassandraSlice<T>> findAllAsync(Pageable pageable) {
+        final Statement query = pagedQuery(baseSelect(), pageable);
+
+        return executeQueryAsyncAndTransformResult(query, rs -> getSliceByResultSet(rs, pageable));
+    }
+
+    @Override
+    public CompletableFuture<Void> scanAll(TokenRangeScanOptions options, ScanCheckpoint checkpoint,
+                                           Consumer<? super T> consumer) {
+        Assert.notNull(options, "options");
+        Assert.notNull(checkpoint, "checkpoint");
+        Assert.notNull(consumer, "consumer");
+
+        final List<TokenRange> ranges = TokenRanges.split(template.getClusterMetadata(), options.getSplits())
+                .stream()
+                .filter(range -> !checkpoint.isCompleted(range))
+                .collect(Collectors.toList());
+
+        return ConcurrencyUtils.mapAsync(ranges, options.getParallelism(), withCurrentExecutionProfile(range -> {
+            final BoundStatement query = bindTokenRange(PreparedStatementCache.Operation.TOKEN_RANGE_SELECT, range,
+                    this::baseSelect);
+            query.setFetchSize(options.getFetchSize());
+
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            Futures.addCallback(template.executeAsync(query), new RangeConsumer(range, checkpoint, consumer, future),
+                    mappingExecutor);
+
+            return future;
+        })).thenApply(r -> null);
+    }
+
+    @Override
+    public Iterable<T> findAllById(Iterable<ID> ids) {
+        if (persistentEntity.getIdProperty().isEntity() || multiGetChunkSize > 0) {
+            // ID is complex or ids are split, need multiple requests
+            return waitFor(findAllAsync(ids));
         } else {
             final Select query = baseSelect();
             converter.writeIdsClause(getEntityClass(), ids, query);
@@ -176,8 +588,10 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
 
     @Override
     public CompletableFuture<Iterable<T>> findAllAsync(Iterable<ID> ids) {
-        if (persistentEntity.getIdProperty().isEntity())
-            throw new IllegalStateException("only non-composite ids supported");
+        if (persistentEntity.getIdProperty().isEntity() || multiGetChunkSize == 1)
+            return findAllByPartitionsAsync(ids);
+        if (multiGetChunkSize > 1)
+            return findAllByChunksAsync(ids);
 
         final Select query = baseSelect();
         converter.writeIdsClause(getEntityClass(), ids, query);
@@ -185,61 +599,232 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         return executeQueryAsyncAndTransformResult(query, this::getListByResultSet);
     }
 
+    /**
+     * Issues single-partition queries concurrently, at most maxInFlightRequests at a time.
+     * Missing entities are skipped, order of ids is preserved.
+     */
+    protected CompletableFuture<Iterable<T>> findAllByPartitionsAsync(Iterable<ID> ids) {
+        return ConcurrencyUtils.mapAsync(ids, maxInFlightRequests, withCurrentExecutionProfile(this::findOneAsync))
+                .thenApply(entities -> {
+                    final List<T> result = new ArrayList<>(entities.size());
+                    for (final T entity: entities) {
+                        if (entity != null)
+                            result.add(entity);
+                    }
+
+                    return result;
+                });
+    }
+
+    /**
+     * Issues IN queries of ids with the same replicas concurrently, at most maxInFlightRequests at a time.
+     * Missing entities are skipped, order of ids is preserved.
+     */
+    protected CompletableFuture<Iterable<T>> findAllByChunksAsync(Iterable<ID> ids) {
+        final List<ID> idList = new ArrayList<>();
+        for (final ID id: ids) {
+            idList.add(id);
+        }
+
+        return ConcurrencyUtils.mapAsync(chunkByReplicas(idList), maxInFlightRequests,
+                withCurrentExecutionProfile(chunk -> executeQueryAsyncAndTransformResult(bindSelectByIds(chunk), rs -> {
+                    final List<T> entities = new ArrayList<>(chunk.size());
+                    for (final T entity: getListByResultSet(rs)) {
+                        entities.add(entity);
+                    }
+                    return entities;
+                })))
+                .thenApply(chunks -> {
+                    final Map<Object, T> entities = new HashMap<>();
+                    for (final List<T> chunk: chunks) {
+                        for (final T entity: chunk) {
+                            entities.put(converter.getEntityId(entity), entity);
+                        }
+                    }
+
+                    final List<T> result = new ArrayList<>(entities.size());
+                    for (final ID id: idList) {
+                        final T entity = entities.get(id);
+                        if (entity != null)
+                            result.add(entity);
+                    }
+
+                    return result;
+                });
+    }
+
+    /**
+     * Groups ids by their replicas and splits the groups into chunks of at most multiGetChunkSize ids.
+     * Without the logged keyspace the replicas are unknown, ids are split in their order.
+     */
+    private List<List<ID>> chunkByReplicas(List<ID> ids) {
+        final String keyspace = template.getLoggedKeyspace();
+        final Metadata metadata = keyspace == null ? null : template.getClusterMetadata();
+
+        final Map<Set<Host>, List<ID>> groups = new LinkedHashMap<>();
+        for (final ID id: ids) {
+            final Set<Host> replicas = metadata == null
+                    ? Collections.emptySet() : metadata.getReplicas(keyspace, routingKey(id));
+            groups.computeIfAbsent(replicas, r -> new ArrayList<>()).add(id);
+        }
+
+        final List<List<ID>> chunks = new ArrayList<>();
+        for (final List<ID> group: groups.values()) {
+            chunks.addAll(Lists.partition(group, multiGetChunkSize));
+        }
+
+        return chunks;
+    }
+
+    private ByteBuffer routingKey(ID id) {
+        return bindSelectById(id).getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+    }
+
     @Override
     public long count() {
+        if (countMode != CountMode.SINGLE_QUERY)
+            return waitFor(countAsync());
+
         final Select query = QueryBuilder.select().countAll().from(getTable());
         queryReadOptions(query);
 
-        final ResultSet rs = template.execute(query);
-        if (rs.isExhausted())
-            throw new DataAccessResourceFailureException("empty resultSet for count query");
-
-        return rs.one().getLong(0);
+        return readCount(template.execute(query));
     }
 
     @Override
     public CompletableFuture<Long> countAsync() {
-        final Select query = QueryBuilder.select().countAll().from(getTable());
-        queryReadOptions(query);
+        switch (countMode) {
+            case TOKEN_RANGES:
+                return countByTokenRangesAsync();
+            case ESTIMATED:
+                return estimateCountAsync();
+            default:
+                final Select query = QueryBuilder.select().countAll().from(getTable());
+                queryReadOptions(query);
+
+                return executeQueryAsyncAndTransformResult(query, BaseCassandraRepository::readCount);
+        }
+    }
 
-        final CompletableFuture<Long> resultFuture = new CompletableFuture<>();
+    /**
+     * Counts every token sub-range in parallel and sums the counts.
+     * A failed sub-range count is retried alone after a growing delay.
+     */
+    protected CompletableFuture<Long> countByTokenRangesAsync() {
+        final TokenRangeCountOptions options = tokenRangeCountOptions;
+        final List<TokenRange> ranges = TokenRanges.split(template.getClusterMetadata(), options.getSplits());
+
+        return ConcurrencyUtils.mapAsync(ranges, options.getParallelism(),
+                withCurrentExecutionProfile(range -> countTokenRangeAsync(range, options, options.getRetries())))
+                .thenApply(counts -> counts.stream().mapToLong(Long::longValue).sum());
+    }
 
-        Futures.addCallback(template.executeAsync(query), new FutureCallback<ResultSet>() {
-            @Override
-            public void onSuccess(ResultSet result) {
-                if (result.isExhausted()) {
-                    resultFuture.completeExceptionally(new DataAccessResourceFailureException("empty resultSet for count query"));
-                    return;
+    private CompletableFuture<Long> countTokenRangeAsync(TokenRange range, TokenRangeCountOptions options,
+                                                         int retriesLeft) {
+        final BoundStatement query = bindTokenRange(PreparedStatementCache.Operation.TOKEN_RANGE_COUNT, range,
+                () -> QueryBuilder.select().countAll().from(getTable()));
+        query.setIdempotent(true);
+        if (options.getRangeTimeoutMillis() > 0)
+            query.setReadTimeoutMillis(options.getRangeTimeoutMillis());
+
+        // the retry runs on the scheduler thread
+        final Function<Integer, CompletableFuture<Long>> retry =
+                withCurrentExecutionProfile(retries -> countTokenRangeAsync(range, options, retries));
+
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        executeQueryAsyncAndTransformResult(query, BaseCassandraRepository::readCount).whenComplete((count, t) -> {
+            if (t == null) {
+                result.complete(count);
+            } else if (retriesLeft > 0 && isRetryable(t)) {
+                // the delay doubles with every retry, an overloaded node gets time to recover
+                final int attempt = options.getRetries() - retriesLeft;
+                final long delayMillis = (long) options.getRetryDelayMillis() << Math.min(attempt, 16);
+
+                try {
+                    RetryScheduler.INSTANCE.schedule(() -> retryCount(retry, retriesLeft - 1, result),
+                            delayMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
                 }
-
-                resultFuture.complete(result.one().getLong(0));
+            } else {
+                result.completeExceptionally(t);
             }
+        });
 
-            @Override
-            public void onFailure(Throwable t) {
-                resultFuture.completeExceptionally(t);
+        return result;
+    }
+
+    private static void retryCount(Function<Integer, CompletableFuture<Long>> retry, int retriesLeft,
+                                   CompletableFuture<Long> result) {
+        try {
+            retry.apply(retriesLeft).whenComplete((retried, retryError) -> {
+                if (retryError == null) {
+                    result.complete(retried);
+                } else {
+                    result.completeExceptionally(retryError);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static boolean isRetryable(Throwable t) {
+        return t instanceof DriverException && !(t instanceof QueryValidationException);
+    }
+
+    /**
+     * Sums the partition estimates of the coordinator's primary ranges and extrapolates the sum
+     * to all ranges of the ring.
+     */
+    protected CompletableFuture<Long> estimateCountAsync() {
+        final String keyspace = template.getLoggedKeyspace();
+        if (keyspace == null) {
+            final CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("session is not bound to a keyspace"));
+            return failed;
+        }
+
+        final Select query = QueryBuilder.select("partitions_count").from("system", "size_estimates");
+        query.where(QueryBuilder.eq("keyspace_name", keyspace)).and(QueryBuilder.eq("table_name", getTable()));
+        query.setConsistencyLevel(ConsistencyLevel.ONE);
+
+        final int ringRanges = template.getClusterMetadata().getTokenRanges().size();
+
+        return executeQueryAsyncAndTransformResult(query, rs -> {
+            long partitions = 0;
+            int localRanges = 0;
+            for (final Row row: rs) {
+                partitions += row.getLong(0);
+                localRanges++;
             }
-        }, MoreExecutors.directExecutor());
 
-        return resultFuture;
+            if (localRanges == 0 || ringRanges <= localRanges)
+                return partitions;
+
+            return Math.round((double) partitions * ringRanges / localRanges);
+        });
     }
 
-    @Override
-    public void deleteById(ID id) {
-        final Delete query = baseDelete();
+    static long readCount(ResultSet rs) {
+        if (rs.isExhausted())
+            throw new DataAccessResourceFailureException("empty resultSet for count query");
 
-        converter.writeIdClause(getEntityClass(), id, query);
+        return rs.one().getLong(0);
+    }
 
-        template.execute(query);
+    @Override
+    public void deleteById(ID id) {
+        template.execute(bindDeleteById(id));
+        cacheInvalidate(id);
     }
 
     @Override
     public CompletableFuture<Void> deleteAsync(ID id) {
-        final Delete query = baseDelete();
-
-        converter.writeIdClause(getEntityClass(), id, query);
-
-        return executeQueryAsyncAndTransformResult(query, rs -> null);
+        return executeWriteAsync(bindDeleteById(id), () -> {
+            cacheInvalidate(id);
+            return null;
+        });
     }
 
     @Override
@@ -261,6 +846,9 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
             }
         } else {
             template.execute(buildDeleteByIdsQuery(entities));
+            for (final T entity: entities) {
+                cacheInvalidate(converter.getEntityId(entity));
+            }
         }
     }
 
@@ -271,7 +859,33 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
 
         final Delete query = buildDeleteByIdsQuery(entities);
 
-        return executeQueryAsyncAndTransformResult(query, rs -> null);
+        return executeQueryAsyncAndTransformResult(query, rs -> {
+            for (final T entity: entities) {
+                cacheInvalidate(converter.getEntityId(entity));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Within a batch of the template the entities are deleted one by one into it.
+     */
+    @Override
+    public CompletableFuture<Void> deleteAllByPartitionAsync(Iterable<? extends T> entities) {
+        if (template.isBatchStarted()) {
+            for (final T entity: entities) {
+                delete(entity);
+            }
+
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final List<Map.Entry<T, BoundStatement>> writes = new ArrayList<>();
+        for (final T entity: entities) {
+            writes.add(new AbstractMap.SimpleImmutableEntry<>(entity, bindDeleteById((ID) converter.getEntityId(entity))));
+        }
+
+        return writeByPartition(writes, entity -> cacheInvalidate(converter.getEntityId(entity)));
     }
 
     private Delete buildDeleteByIdsQuery(Iterable<? extends T> entities) {
@@ -294,6 +908,7 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         queryWriteOptions(query);
 
         template.execute(query);
+        invalidateAll();
     }
 
     @Override
@@ -301,7 +916,332 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         final Statement query = QueryBuilder.truncate(getTable());
         queryWriteOptions(query);
 
-        return executeQueryAsyncAndTransformResult(query, rs -> null);
+        return executeQueryAsyncAndTransformResult(query, rs -> {
+            invalidateAll();
+            return null;
+        });
+    }
+
+    /**
+     * @return the near cache, null if it is disabled or the entity has encrypted fields
+     * that must not be cached decrypted
+     */
+    private EntityCache<Row> entityCache() {
+        final EntityCache<Row> cache = entityCache;
+        if (cache == null || entityCacheDecrypted)
+            return cache;
+
+        if (encryptedEntity == null)
+            encryptedEntity = hasCryptoProperties(persistentEntity);
+
+        return encryptedEntity ? null : cache;
+    }
+
+    private boolean hasCryptoProperties(CassandraPersistentEntity<?> entity) {
+        for (final CassandraPersistentProperty property: entity) {
+            if (property.isCrypto())
+                return true;
+            if (property.isEntity() && hasCryptoProperties(
+                    converter.getMappingContext().getPersistentEntity(property.getActualType())))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Caches the row rather than the entity, the entity belongs to the caller.
+     *
+     * @param generation generation of the id when the read was sent, a write since then wins
+     */
+    private T cacheLoaded(Object id, ResultSet rs, long generation) {
+        if (rs.isExhausted())
+            return null;
+
+        final Row row = rs.one();
+        final EntityCache<Row> cache = entityCache();
+        if (cache != null)
+            cache.loaded(id, row, generation);
+
+        return readEntity(row);
+    }
+
+    /**
+     * Evicts the saved entity, the cache only holds rows as read.
+     */
+    private void cacheSaved(Object entity) {
+        if (entityCache() != null)
+            cacheInvalidate(converter.getEntityId(entity));
+    }
+
+    /**
+     * Forgets all cached entities and snapshots after a write of unknown rows, e.g. a derived delete.
+     * Entities read before are saved with a full INSERT again.
+     */
+    void invalidateAll() {
+        cacheInvalidate(null);
+        snapshots.invalidateAll();
+    }
+
+    /**
+     * @param id id of the evicted entity, null evicts all
+     */
+    private void cacheInvalidate(Object id) {
+        final EntityCache<Row> cache = entityCache();
+        if (cache == null)
+            return;
+
+        if (id == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    protected BoundStatement bindInsert(Object entity) {
+        return bindInsert(converter.getColumnValues(entity));
+    }
+
+    private BoundStatement bindInsert(Map<String, Object> values) {
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.INSERT, values.keySet(), () -> {
+            final Insert query = baseInsert();
+            for (final String column: values.keySet()) {
+                query.value(column, QueryBuilder.bindMarker());
+            }
+
+            return query;
+        });
+
+        final BoundStatement statement = prepared.bind(values.values().toArray());
+        if (converter.getNullWriteMode(getEntityClass()) == NullWriteMode.UNSET) {
+            int i = 0;
+            for (final Object value: values.values()) {
+                if (value == null)
+                    statement.unset(i);
+                i++;
+            }
+        }
+        queryWriteOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Binds the write of save: an UPDATE of the changed columns if the entity is tracked,
+     * otherwise a full INSERT.
+     *
+     * @param entity entity
+     * @param values current column values of the entity
+     * @return statement or null if no column changed
+     */
+    protected BoundStatement bindSave(Object entity, Map<String, Object> values) {
+        final Map<String, Object> snapshot = dirtyTracking ? snapshots.getIfPresent(entity) : null;
+        if (snapshot == null)
+            return bindInsert(values);
+
+        final Map<String, Object> idValues =
+                converter.getIdColumnValues(getEntityClass(), converter.getEntityId(entity));
+        for (final Map.Entry<String, Object> id: idValues.entrySet()) {
+            if (!Objects.deepEquals(id.getValue(), snapshot.get(id.getKey())))
+                return bindInsert(values);
+        }
+
+        // columns of an embedded entity that became null are missing from values
+        final Set<String> columns = new LinkedHashSet<>(values.keySet());
+        columns.addAll(snapshot.keySet());
+
+        final Map<String, Object> changed = new LinkedHashMap<>();
+        for (final String column: columns) {
+            if (!idValues.containsKey(column) && !Objects.deepEquals(values.get(column), snapshot.get(column)))
+                changed.put(column, values.get(column));
+        }
+
+        if (changed.isEmpty())
+            return null;
+
+        final List<String> boundColumns = new ArrayList<>(changed.keySet());
+        boundColumns.addAll(idValues.keySet());
+
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.UPDATE, boundColumns, () -> {
+            final Update query = baseUpdate();
+            for (final String column: changed.keySet()) {
+                query.with(QueryBuilder.set(column, QueryBuilder.bindMarker()));
+            }
+            for (final String column: idValues.keySet()) {
+                query.where().and(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+            }
+
+            return query;
+        });
+
+        final List<Object> boundValues = new ArrayList<>(changed.values());
+        boundValues.addAll(idValues.values());
+
+        final BoundStatement statement = prepared.bind(boundValues.toArray());
+        queryWriteOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Remembers the written values. Within a batch the write may still be cancelled,
+     * so the entity is forgotten and the next save writes it fully.
+     */
+    protected void trackSaved(Object entity, Map<String, Object> values) {
+        if (!dirtyTracking)
+            return;
+
+        if (template.isBatchStarted()) {
+            snapshots.invalidate(entity);
+        } else {
+            snapshots.put(entity, values);
+        }
+    }
+
+    protected BoundStatement bindSelectById(ID id) {
+        final Map<String, Object> idValues = converter.getIdColumnValues(getEntityClass(), id);
+
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.SELECT, idValues.keySet(),
+                () -> whereColumnsEq(baseSelect(), idValues.keySet()));
+
+        final BoundStatement statement = prepared.bind(idValues.values().toArray());
+        queryReadOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Selects the entities of simple ids with one IN query routed to the replicas of the first id.
+     */
+    protected BoundStatement bindSelectByIds(List<ID> ids) {
+        final String idColumn = ((CassandraPersistentProperty) persistentEntity.getIdProperty()).getColumnName();
+
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.SELECT_IN,
+                Collections.singletonList(idColumn),
+                () -> baseSelect().where(QueryBuilder.in(idColumn, QueryBuilder.bindMarker())));
+
+        final List<Object> values = new ArrayList<>(ids.size());
+        for (final ID id: ids) {
+            values.add(converter.getIdColumnValues(getEntityClass(), id).get(idColumn));
+        }
+
+        final BoundStatement statement = prepared.bind(values);
+        statement.setRoutingKey(routingKey(ids.get(0)));
+        queryReadOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Selects only the key columns of at most one row, an empty result means the entity does not exist.
+     */
+    protected BoundStatement bindExistsById(ID id) {
+        final Map<String, Object> idValues = converter.getIdColumnValues(getEntityClass(), id);
+
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.EXISTS, idValues.keySet(),
+                () -> {
+                    final String[] keyColumns = idValues.keySet().toArray(new String[0]);
+
+                    return whereColumnsEq(QueryBuilder.select(keyColumns).from(getTable()), idValues.keySet())
+                            .limit(1);
+                });
+
+        final BoundStatement statement = prepared.bind(idValues.values().toArray());
+        queryReadOptions(statement);
+
+        return statement;
+    }
+
+    protected BoundStatement bindDeleteById(ID id) {
+        final Map<String, Object> idValues = converter.getIdColumnValues(getEntityClass(), id);
+
+        final PreparedStatement prepared = prepare(PreparedStatementCache.Operation.DELETE, idValues.keySet(), () -> {
+            final Delete query = baseDelete();
+            for (final String column: idValues.keySet()) {
+                query.where().and(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+            }
+
+            return query;
+        });
+
+        final BoundStatement statement = prepared.bind(idValues.values().toArray());
+        queryWriteOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Binds the query restricted to the token range of the partition key.
+     * The upper bound is omitted for the last range of the ring.
+     *
+     * @param operation statement operation, part of the cache key
+     * @param range non-wrapping token range
+     * @param baseQuery query without where clause
+     * @return bound statement
+     */
+    protected BoundStatement bindTokenRange(PreparedStatementCache.Operation operation, TokenRange range,
+                                            Supplier<Select> baseQuery) {
+        final boolean openEnded = TokenRanges.isOpenEnded(range);
+        final List<String> bounds = openEnded ? Collections.singletonList("start") : Arrays.asList("start", "end");
+
+        final PreparedStatement prepared = prepare(operation, bounds, () -> {
+            final String token = QueryBuilder.token(TokenRanges.partitionKeyColumns(
+                    template.getClusterMetadata(), template.getLoggedKeyspace(), getTable()));
+
+            final Select query = baseQuery.get();
+            query.where(QueryBuilder.gt(token, QueryBuilder.bindMarker()));
+            if (!openEnded)
+                query.where().and(QueryBuilder.lte(token, QueryBuilder.bindMarker()));
+
+            return query;
+        });
+
+        final BoundStatement statement = prepared.bind();
+        statement.setToken(0, range.getStart());
+        if (!openEnded)
+            statement.setToken(1, range.getEnd());
+        queryReadOptions(statement);
+
+        return statement;
+    }
+
+    /**
+     * Returns the cached prepared statement for this entity, preparing it on first use.
+     *
+     * @param operation statement operation
+     * @param columns bound columns, part of the cache key
+     * @param statementBuilder builds the statement with bind markers in the order of columns
+     * @return prepared statement
+     */
+    protected PreparedStatement prepare(PreparedStatementCache.Operation operation, Collection<String> columns,
+                                        Supplier<RegularStatement> statementBuilder) {
+
+        return preparedStatementCache.get(getEntityClass(), operation, columns,
+                () -> template.prepare(withoutExecutionProfile(statementBuilder)));
+    }
+
+    /**
+     * Builds a statement that is prepared and cached for all profiles. The prepared statement passes
+     * its options to the bound statements, so the profile is applied to every bound statement instead.
+     *
+     * @param builder builds the statement with {@link #baseSelect()} and the like
+     * @return built statement without the options of the current profile
+     */
+    protected <S> S withoutExecutionProfile(Supplier<S> builder) {
+        buildingPrepared.set(Boolean.TRUE);
+        try {
+            return builder.get();
+        } finally {
+            buildingPrepared.remove();
+        }
+    }
+
+    private Select whereColumnsEq(Select query, Collection<String> columns) {
+        for (final String column: columns) {
+            query.where().and(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+        }
+
+        return query;
     }
 
     protected String c(String path) {
@@ -312,11 +1252,17 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
             Statement query, Function<ResultSet, N> resultTransformer) {
 
         final CompletableFuture<N> resultFuture = new CompletableFuture<>();
+        // a write added to a batch completes at once, its result must be handled on the thread of the batch
+        final Executor executor = template.isBatchStarted() ? MoreExecutors.directExecutor() : mappingExecutor;
 
         Futures.addCallback(template.executeAsync(query), new FutureCallback<ResultSet>() {
             @Override
             public void onSuccess(ResultSet result) {
-                resultFuture.complete(resultTransformer.apply(result));
+                try {
+                    executor.execute(() -> transform(result, resultTransformer, resultFuture));
+                } catch (RejectedExecutionException e) {
+                    resultFuture.completeExceptionally(e);
+                }
             }
 
             @Override
@@ -328,15 +1274,60 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         return resultFuture;
     }
 
+    private static <N> void transform(ResultSet result, Function<ResultSet, N> resultTransformer,
+                                      CompletableFuture<N> resultFuture) {
+        try {
+            resultFuture.complete(resultTransformer.apply(result));
+        } catch (RuntimeException e) {
+            resultFuture.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Sends a write directly or through the write coalescer.
+     *
+     * @param statement modifying statement
+     * @param written result of the write, called once it is done
+     */
+    protected <N> CompletableFuture<N> executeWriteAsync(Statement statement, Supplier<N> written) {
+        if (writeCoalescer == null || template.isBatchStarted())
+            return executeQueryAsyncAndTransformResult(statement, rs -> written.get());
+
+        return writeCoalescer.write(statement).thenApply(v -> written.get());
+    }
+
+    /**
+     * Waits for the future of a fan-out operation, translating the failure like synchronous calls do.
+     */
+    protected <N> N waitFor(CompletableFuture<N> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessResourceFailureException("interrupted while waiting for result", e);
+        } catch (ExecutionException e) {
+            throw translateExecutionException(e);
+        }
+    }
+
+    private static RuntimeException translateExecutionException(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            final RuntimeException translated =
+                    EXCEPTION_TRANSLATOR.translateExceptionIfPossible((RuntimeException) cause);
+            return translated == null ? (RuntimeException) cause : translated;
+        }
+        if (cause instanceof Error)
+            throw (Error) cause;
+
+        return new DataAccessResourceFailureException(cause.getMessage(), e);
+    }
+
     protected T getByResultSet(final ResultSet rs) {
         if (rs.isExhausted())
             return null;
 
-        final T entity = (T)converter.read(getEntityClass(), rs.one());
-
-        afterFetch(entity);
-
-        return entity;
+        return readEntity(rs.one());
     }
 
     protected T readEntity(Row row) {
@@ -344,6 +1335,10 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
 
         afterFetch(entity);
 
+        // encrypted columns are written on every save anyway, they are not encrypted on every read
+        if (dirtyTracking)
+            snapshots.put(entity, converter.getPlainColumnValues(entity));
+
         return entity;
     }
 
@@ -351,6 +1346,49 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         return getByResultSet(template.execute(query));
     }
 
+    /**
+     * Restricts the query to one page: fetch size is the page size, paging state is taken
+     * from {@link CassandraPageRequest}.
+     */
+    protected Statement pagedQuery(Statement query, Pageable pageable) {
+        Assert.isTrue(pageable.isPaged(), "pageable must be paged");
+
+        query.setFetchSize(pageable.getPageSize());
+
+        final String pagingState = pageable instanceof CassandraPageRequest
+                ? ((CassandraPageRequest) pageable).getPagingState() : null;
+
+        if (pagingState != null) {
+            query.setPagingState(PagingState.fromString(pagingState));
+        } else if (pageable.getPageNumber() > 0) {
+            throw new IllegalArgumentException("page " + pageable.getPageNumber()
+                    + " can't be requested without paging state, use CassandraPageRequest");
+        }
+
+        return query;
+    }
+
+    /**
+     * Reads only the rows of the fetched page, the next page is never fetched.
+     */
+    protected CassandraSlice<T> getSliceByResultSet(final ResultSet rs, Pageable pageable) {
+        return getSliceByResultSet(rs, pageable, this::readEntity);
+    }
+
+    protected <R> CassandraSlice<R> getSliceByResultSet(final ResultSet rs, Pageable pageable,
+                                                        Function<Row, R> rowMapper) {
+        final int available = rs.getAvailableWithoutFetching();
+        final List<R> content = new ArrayList<>(available);
+
+        for (int i = 0; i < available; i++) {
+            content.add(rowMapper.apply(rs.one()));
+        }
+
+        final PagingState nextPagingState = rs.getExecutionInfo().getPagingState();
+
+        return new CassandraSlice<>(content, pageable, nextPagingState == null ? null : nextPagingState.toString());
+    }
+
     protected Iterable<T> getListByResultSet(final ResultSet rs) {
         return resultSetToEntityIterator(rs);
     }
@@ -359,6 +1397,34 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         return getListByResultSet(template.execute(query));
     }
 
+    /**
+     * Reads the projections of a query selecting the columns of {@link #baseSelect(Class)}.
+     */
+    protected <P> Iterable<P> getListByResultSet(final ResultSet rs, Class<P> projection) {
+        return getListByResultSet(rs, row -> readProjection(projection, row));
+    }
+
+    protected <R> Iterable<R> getListByResultSet(final ResultSet rs, Function<Row, R> rowMapper) {
+        return () -> new ResultSetToEntityIterator<>(rs, rowMapper, template::fetchMoreResults);
+    }
+
+    protected <P> Iterable<P> getListByQuery(Statement query, Class<P> projection) {
+        return getListByResultSet(template.execute(query), projection);
+    }
+
+    protected <P> P readProjection(Class<P> projection, Row row) {
+        return converter.readProjection(getEntityClass(), projection, row);
+    }
+
+    /**
+     * Publishes the entities of a custom query, pages are fetched on subscriber demand.
+     * The query is executed for every subscription.
+     */
+    protected Publisher<T> getPublisherByQuery(Statement query) {
+        return new ResultSetPublisher<>(() -> template.executeAsync(query), template::fetchMoreResults,
+                this::readEntity, mappingExecutor);
+    }
+
     protected String getTable() {
         return persistentEntity.getTable();
     }
@@ -368,6 +1434,28 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         converter.addAllEntityColumns(persistentEntity, selection);
 
         final Select query = selection.from(getTable());
+
+        if (fetchSize > 0)
+            query.setFetchSize(fetchSize);
+
+        queryReadOptions(query);
+
+        return query;
+    }
+
+    /**
+     * Selects only the columns the projection needs.
+     *
+     * @param projection interface or DTO class
+     * @return select of the whole table
+     */
+    protected Select baseSelect(Class<?> projection) {
+        final List<String> columns = converter.getProjectionColumns(getEntityClass(), projection);
+        final Select query = QueryBuilder.select(columns.toArray(new String[columns.size()])).from(getTable());
+
+        if (fetchSize > 0)
+            query.setFetchSize(fetchSize);
+
         queryReadOptions(query);
 
         return query;
@@ -403,26 +1491,138 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
 
     protected void queryReadOptions(final Statement query) {
         query.setConsistencyLevel(ConsistencyLevel.QUORUM);
+        applyExecutionProfile(query);
     }
 
     protected void queryWriteOptions(final Statement query) {
         query.setConsistencyLevel(ConsistencyLevel.QUORUM);
+        applyExecutionProfile(query);
+    }
+
+    /**
+     * Applies the profile selected by the current {@link UseExecutionProfile} method,
+     * or else by the repository class.
+     */
+    protected void applyExecutionProfile(final Statement query) {
+        if (buildingPrepared.get() != null)
+            return;
+
+        final String name = Optional.ofNullable(ExecutionProfileContext.get()).orElse(executionProfileName);
+        if (name != null)
+            template.getExecutionProfile(name).apply(query);
+    }
+
+    /**
+     * The profile is selected for the calling thread, asynchronous steps run on driver threads.
+     *
+     * @param function step to run later, possibly on another thread
+     * @return step that runs with the profile selected when it was created
+     */
+    protected <I, R> Function<I, R> withCurrentExecutionProfile(Function<I, R> function) {
+        final String name = ExecutionProfileContext.get();
+        return input -> {
+            final String previous = ExecutionProfileContext.set(name);
+            try {
+                return function.apply(input);
+            } finally {
+                ExecutionProfileContext.set(previous);
+            }
+        };
     }
 
     protected Iterable<T> resultSetToEntityIterator(final ResultSet rs) {
-        return () -> new ResultSetToEntityIterator<>(rs);
+        return () -> new ResultSetToEntityIterator<>(rs, this::readEntity, template::fetchMoreResults);
     }
 
-    private class ResultSetToEntityIterator<TT extends T> implements Iterator<TT> {
-        final private Iterator<Row> delegate;
+    /**
+     * Delays the retries of token range counts, created on the first retry.
+     */
+    private static class RetryScheduler {
+        final static private ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cassandra-count-retry-%d").setDaemon(true).build());
+    }
 
-        ResultSetToEntityIterator(ResultSet rs) {
+    /**
+     * Consumes all pages of one token range, the next page is requested after the current one is consumed.
+     */
+    private class RangeConsumer implements FutureCallback<ResultSet> {
+        final private TokenRange range;
+        final private ScanCheckpoint checkpoint;
+        final private Consumer<? super T> consumer;
+        final private CompletableFuture<Void> future;
+
+        RangeConsumer(TokenRange range, ScanCheckpoint checkpoint, Consumer<? super T> consumer,
+                      CompletableFuture<Void> future) {
+            this.range = range;
+            this.checkpoint = checkpoint;
+            this.consumer = consumer;
+            this.future = future;
+        }
+
+        @Override
+        public void onSuccess(ResultSet rs) {
+            ResultSet current = rs;
+            try {
+                while (true) {
+                    for (int i = current.getAvailableWithoutFetching(); i > 0; i--) {
+                        consumer.accept(readEntity(current.one()));
+                    }
+
+                    if (current.isFullyFetched()) {
+                        checkpoint.markCompleted(range);
+                        future.complete(null);
+                        return;
+                    }
+
+                    final ListenableFuture<ResultSet> next = template.fetchMoreResults(current);
+                    if (!next.isDone()) {
+                        Futures.addCallback(next, this, mappingExecutor);
+                        return;
+                    }
+
+                    // loop instead of recursing when the page is already there
+                    current = Futures.getDone(next);
+                }
+            } catch (ExecutionException e) {
+                onFailure(e.getCause());
+            } catch (RuntimeException e) {
+                onFailure(e);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            future.completeExceptionally(t);
+        }
+    }
+
+    private static class ResultSetToEntityIterator<R> implements Iterator<R> {
+        final private ResultSet rs;
+        final private Iterator<Row> delegate;
+        final private Function<Row, R> rowMapper;
+        final private Function<ResultSet, ListenableFuture<ResultSet>> fetchMore;
+        final private int prefetchThreshold;
+        private ListenableFuture<ResultSet> fetching;
+
+        ResultSetToEntityIterator(ResultSet rs, Function<Row, R> rowMapper,
+                                  Function<ResultSet, ListenableFuture<ResultSet>> fetchMore) {
+            this.rs = rs;
             this.delegate = rs.iterator();
+            this.rowMapper = rowMapper;
+            this.fetchMore = fetchMore;
+            // start fetching the next page while the second half of the current one is consumed
+            this.prefetchThreshold = rs.getAvailableWithoutFetching() / 2;
         }
 
         @Override
         public boolean hasNext() {
             try {
+                // pages are fetched here rather than by the driver iterator, so every fetch is measured
+                final int available = rs.getAvailableWithoutFetching();
+                if ((available == 0 || available == prefetchThreshold) && !rs.isFullyFetched()
+                        && (fetching == null || fetching.isDone()))
+                    fetching = fetchMore.apply(rs);
+
                 return delegate.hasNext();
             } catch (RuntimeException e) {
                 final RuntimeException translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
@@ -431,17 +1631,13 @@ abstract public class BaseCassandraRepository<T, ID extends Serializable> implem
         }
 
         @Override
-        public TT next() {
+        public R next() {
             try {
                 final Row row = delegate.next();
                 if (row == null)
                     return null;
 
-                final TT entity = (TT)converter.read(getEntityClass(), row);
-
-                afterFetch(entity);
-
-                return entity;
+                return rowMapper.apply(row);
             } catch (RuntimeException e) {
                 final RuntimeException translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
                 throw  translated == null ? e : translated;
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown by bulk write operations when some of the entities were not written.
+ * The rest of the entities were written successfully.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class BulkWriteException extends DataAccessResourceFailureException {
+    private static final long serialVersionUID = -7509466612550678406L;
+
+    final private List<Failure> failures;
+    final private int succeeded;
+
+    public BulkWriteException(List<Failure> failures, int succeeded) {
+        super(failures.size() + " of " + (failures.size() + succeeded) + " entities were not written",
+                failures.isEmpty() ? null : failures.get(0).getCause());
+
+        this.failures = Collections.unmodifiableList(failures);
+        this.succeeded = succeeded;
+    }
+
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    final public static class Failure {
+        final private Object entity;
+        final private Throwable cause;
+
+        public Failure(Object entity, Throwable cause) {
+            this.entity = entity;
+            this.cause = cause;
+        }
+
+        public Object getEntity() {
+            return entity;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Failure{");
+            sb.append("entity=").append(entity);
+            sb.append(", cause=").append(cause);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+}
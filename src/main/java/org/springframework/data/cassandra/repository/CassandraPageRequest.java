@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Page request that resumes a query from the opaque driver paging state.
+ * Cassandra can't skip to an arbitrary page, so every page but the first needs
+ * the paging state returned with the previous {@link CassandraSlice}.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class CassandraPageRequest extends PageRequest {
+    private static final long serialVersionUID = 8249942517164385533L;
+
+    final private String pagingState;
+
+    // PageRequest has only deprecated constructors, the replacing PageRequest.of can't create a subclass
+    @SuppressWarnings("deprecation")
+    protected CassandraPageRequest(int page, int size, String pagingState) {
+        super(page, size, Sort.unsorted());
+        this.pagingState = pagingState;
+    }
+
+    /**
+     * First page of the given size.
+     */
+    public static CassandraPageRequest first(int size) {
+        return new CassandraPageRequest(0, size, null);
+    }
+
+    /**
+     * Page of the given size that continues after the given paging state,
+     * a {@literal null} state means the first page.
+     */
+    public static CassandraPageRequest of(int size, String pagingState) {
+        return new CassandraPageRequest(pagingState == null ? 0 : 1, size, pagingState);
+    }
+
+    public String getPagingState() {
+        return pagingState;
+    }
+
+    @Override
+    public CassandraPageRequest first() {
+        return first(getPageSize());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CassandraPageRequest)) return false;
+        if (!super.equals(o)) return false;
+
+        final CassandraPageRequest that = (CassandraPageRequest) o;
+
+        return pagingState != null ? pagingState.equals(that.pagingState) : that.pagingState == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (pagingState != null ? pagingState.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CassandraPageRequest{");
+        sb.append("page=").append(getPageNumber());
+        sb.append(", size=").append(getPageSize());
+        sb.append(", pagingState=").append(pagingState);
+        sb.append('}');
+        return sb.toString();
+    }
+}
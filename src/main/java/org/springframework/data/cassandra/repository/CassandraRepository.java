@@ -16,11 +16,14 @@
 package org.springframework.data.cassandra.repository;
 
 import com.datastax.driver.core.ConsistencyLevel;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.CrudRepository;
 
 import java.io.Serializable;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Date: 04.02.14 17:31
@@ -29,16 +32,65 @@ import java.util.concurrent.CompletableFuture;
  */
 public interface CassandraRepository<T, ID extends Serializable> extends CrudRepository<T, ID>  {
     <S extends T> CompletableFuture<S> saveAsync(S entity);
+    <S extends T> CompletableFuture<Iterable<S>> saveAllAsync(Iterable<S> entities);
+    /**
+     * Saves the entities grouped by partition: entities of one partition are written with an unlogged batch,
+     * batches of different partitions are sent concurrently. Failed entities do not stop the rest,
+     * they are reported with {@link BulkWriteException}.
+     *
+     * @param entities entities
+     * @return future of the saved entities
+     */
+    <S extends T> CompletableFuture<Iterable<S>> saveAllByPartitionAsync(Iterable<S> entities);
     CompletableFuture<T> findOneAsync(ID id);
     Optional<T> findById(ID id, ConsistencyLevel level);
+    /**
+     * Reads only the columns of the projection.
+     *
+     * @param id entity id
+     * @param projection interface or DTO class
+     * @return projection of the entity
+     */
+    <P> Optional<P> findById(ID id, Class<P> projection);
     CompletableFuture<Boolean> existsAsync(ID id);
     CompletableFuture<Iterable<T>> findAllAsync();
+    <P> Iterable<P> findAll(Class<P> projection);
+    <P> CompletableFuture<Iterable<P>> findAllAsync(Class<P> projection);
+    /**
+     * Publishes all entities, the next page is fetched only when the subscriber requests more.
+     */
+    Publisher<T> findAllPublisher();
+    /**
+     * Reads one page, continuing from the paging state of {@link CassandraPageRequest} if present.
+     *
+     * @param pageable page size and optional paging state
+     * @return page content and paging state of the next page
+     */
+    CassandraSlice<T> findAll(Pageable pageable);
+    CompletableFuture<CassandraSlice<T>> findAllAsync(Pageable pageable);
+    /**
+     * Scans the whole table by token sub-ranges in parallel. Sub-ranges recorded in the checkpoint are skipped
+     * and every fully consumed sub-range is recorded, so a failed scan can be resumed with the same checkpoint.
+     *
+     * @param options split count, parallelism and fetch size
+     * @param checkpoint completed sub-ranges
+     * @param consumer receives every entity, called concurrently from driver threads
+     * @return future completed when all sub-ranges are consumed
+     */
+    CompletableFuture<Void> scanAll(TokenRangeScanOptions options, ScanCheckpoint checkpoint, Consumer<? super T> consumer);
     CompletableFuture<Iterable<T>> findAllAsync (Iterable<ID> ids);
     CompletableFuture<Long> countAsync();
     CompletableFuture<Void> deleteAsync(ID id);
     CompletableFuture<Void> deleteAsync(T entity);
     CompletableFuture<Void> deleteAsync(Iterable<? extends T> entities);
     CompletableFuture<Void> deleteAllAsync();
+    /**
+     * Deletes the entities grouped by partition like {@link #saveAllByPartitionAsync(Iterable)}.
+     *
+     * @param entities entities
+     * @return future completed when all entities are deleted
+     */
+    CompletableFuture<Void> deleteAllByPartitionAsync(Iterable<? extends T> entities);
     /**
      * @deprecated use org.springframework.data.repository.CrudRepository#saveAll(java.lang.Iterable)
      */
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+/**
+ * One page of a query result together with the paging state of the next page.
+ * The paging state is opaque and may be handed to a client, the next page is requested with
+ * {@link CassandraPageRequest#of(int, String)}.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class CassandraSlice<T> extends SliceImpl<T> {
+    private static final long serialVersionUID = 2091770074413882780L;
+
+    final private String pagingState;
+
+    public CassandraSlice(List<T> content, Pageable pageable, String pagingState) {
+        super(content, pageable, pagingState != null);
+        this.pagingState = pagingState;
+    }
+
+    /**
+     * @return paging state of the next page or {@literal null} if this page is the last one
+     */
+    public String getPagingState() {
+        return pagingState;
+    }
+
+    @Override
+    public Pageable nextPageable() {
+        if (!hasNext())
+            return Pageable.unpaged();
+
+        return new CassandraPageRequest(getNumber() + 1, getSize(), pagingState);
+    }
+
+}
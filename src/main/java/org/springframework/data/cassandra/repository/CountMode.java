@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+/**
+ * How {@link CassandraRepository#count()} counts the rows of a table.
+ *
+ * @author Alexandr V Solomatin
+ */
+public enum CountMode {
+    /**
+     * Single {@code SELECT count(*)} over the whole table, one coordinator scans the cluster.
+     */
+    SINGLE_QUERY,
+    /**
+     * Exact count summed from parallel {@code count(*)} queries over token sub-ranges,
+     * see {@link TokenRangeCountOptions}.
+     */
+    TOKEN_RANGES,
+    /**
+     * Estimated number of partitions read from {@code system.size_estimates} of the coordinator,
+     * extrapolated to the whole ring. Equals the row count only for tables without clustering columns.
+     * The estimates are refreshed by the server periodically and are 0 until the table is flushed.
+     */
+    ESTIMATED
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded near cache of entities by id. When the cache is full a loaded entity is admitted only
+ * if its id was requested before recently, one-off reads don't evict the hot entities.
+ * <p>
+ * Every write of an id bumps its generation, a load that started before the write is not cached:
+ * it may return the row as it was before the write.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class EntityCache<T> {
+    // generations of ids are striped, a write to another id of the stripe only costs a cache fill
+    final static private int GENERATION_STRIPES = 1024;
+
+    final private Cache<Object, T> cache;
+    final private AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    final private FrequencySketch sketch;
+    final private long maximumSize;
+
+    EntityCache(EntityCacheOptions options) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(options.getMaximumSize())
+                .expireAfterWrite(options.getExpireAfterWriteMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        sketch = new FrequencySketch(options.getMaximumSize());
+        maximumSize = options.getMaximumSize();
+    }
+
+    T get(Object id) {
+        sketch.increment(id);
+
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * @param id id to load
+     * @return generation to pass to {@link #loaded}, taken before the load is sent
+     */
+    long generation(Object id) {
+        return generations.get(stripe(id));
+    }
+
+    /**
+     * @param generation generation of the id when the load was sent
+     */
+    void loaded(Object id, T entity, long generation) {
+        final int stripe = stripe(id);
+        if (generations.get(stripe) != generation)
+            return;
+
+        if (cache.size() < maximumSize || sketch.frequency(id) > 1) {
+            cache.put(id, entity);
+            // a write between the check and the put may have missed the entity
+            if (generations.get(stripe) != generation)
+                cache.asMap().remove(id, entity);
+        }
+    }
+
+    void invalidate(Object id) {
+        generations.incrementAndGet(stripe(id));
+        cache.invalidate(id);
+    }
+
+    void invalidateAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static int stripe(Object id) {
+        final int h = id.hashCode();
+        return (h ^ h >>> 16) & GENERATION_STRIPES - 1;
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.util.Assert;
+
+/**
+ * Options of the near cache of {@link BaseCassandraRepository#findById(Object)}.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class EntityCacheOptions {
+    private long maximumSize = 10000;
+    private long expireAfterWriteMillis = 60000;
+    private boolean cacheDecrypted;
+
+    /**
+     * @return maximum number of cached entities
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be positive");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return time an entity stays cached after it was read or saved
+     */
+    public long getExpireAfterWriteMillis() {
+        return expireAfterWriteMillis;
+    }
+
+    public void setExpireAfterWriteMillis(long expireAfterWriteMillis) {
+        Assert.isTrue(expireAfterWriteMillis > 0, "expireAfterWriteMillis must be positive");
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+    }
+
+    /**
+     * @return true if entities with {@link org.springframework.data.cassandra.mapping.Crypto} fields
+     * may be cached, their rows are decrypted on every hit; by default they are always read from the database
+     */
+    public boolean isCacheDecrypted() {
+        return cacheDecrypted;
+    }
+
+    public void setCacheDecrypted(boolean cacheDecrypted) {
+        this.cacheDecrypted = cacheDecrypted;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("EntityCacheOptions{");
+        sb.append("maximumSize=").append(maximumSize);
+        sb.append(", expireAfterWriteMillis=").append(expireAfterWriteMillis);
+        sb.append(", cacheDecrypted=").append(cacheDecrypted);
+        sb.append('}');
+        return sb.toString();
+    }
+}
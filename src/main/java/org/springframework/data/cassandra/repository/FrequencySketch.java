@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate access frequency of keys, a count-min sketch of four rows with counters capped at 15.
+ * Counters are halved every 10 * capacity increments, so the frequency reflects recent accesses.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class FrequencySketch {
+    final static private int DEPTH = 4;
+    final static private int MAX_COUNT = 15;
+    final static private int[] SEEDS = {0x97cb3127, 0xb8f1a7d5, 0x7f4a7c15, 0x61c88647};
+
+    final private AtomicIntegerArray counters;
+    final private int mask;
+    final private int sampleSize;
+    final private AtomicInteger additions = new AtomicInteger();
+
+    FrequencySketch(long capacity) {
+        final int width = Integer.highestOneBit((int) Math.min(Math.max(capacity, 16), 1 << 24) * 2 - 1);
+
+        counters = new AtomicIntegerArray(width * DEPTH);
+        mask = width - 1;
+        sampleSize = (int) Math.min(capacity * 10, Integer.MAX_VALUE);
+    }
+
+    void increment(Object key) {
+        final int hash = spread(key.hashCode());
+        for (int i = 0; i < DEPTH; i++) {
+            final int index = index(hash, i);
+            if (counters.get(index) < MAX_COUNT)
+                counters.incrementAndGet(index);
+        }
+
+        if (additions.incrementAndGet() >= sampleSize)
+            age();
+    }
+
+    int frequency(Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters.get(index(hash, i)));
+        }
+
+        return frequency;
+    }
+
+    private synchronized void age() {
+        if (additions.get() < sampleSize)
+            return;
+
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+        additions.set(0);
+    }
+
+    private int index(int hash, int row) {
+        final int column = spread(hash * SEEDS[row]) & mask;
+        return row * (mask + 1) + column;
+    }
+
+    private static int spread(int h) {
+        final int x = (h ^ (h >>> 16)) * 0x45d9f3b;
+        return x ^ (x >>> 16);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded cache of prepared statements keyed by entity class, operation and column set.
+ * May be shared between repositories.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class PreparedStatementCache {
+    final private static long DEFAULT_MAXIMUM_SIZE = 1000L;
+
+    final private Cache<Key, PreparedStatement> cache;
+
+    public PreparedStatementCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public PreparedStatementCache(long maximumSize) {
+        Assert.isTrue(maximumSize > 0, "maximumSize must be positive");
+
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Returns cached statement or prepares it with the given loader.
+     *
+     * @param entityClass entity class
+     * @param operation statement operation
+     * @param columns columns that are bound in the statement, order matters
+     * @param loader prepares the statement on cache miss
+     * @return prepared statement
+     */
+    public PreparedStatement get(Class<?> entityClass, Operation operation, Collection<String> columns,
+                                 Callable<PreparedStatement> loader) {
+
+        return get(entityClass, null, operation, columns, loader);
+    }
+
+    /**
+     * Returns cached statement or prepares it with the given loader.
+     *
+     * @param entityClass entity class
+     * @param projectionType projection the statement selects, null for the entity
+     * @param operation statement operation
+     * @param columns columns that are bound in the statement, order matters
+     * @param loader prepares the statement on cache miss
+     * @return prepared statement
+     */
+    public PreparedStatement get(Class<?> entityClass, Class<?> projectionType, Operation operation,
+                                 Collection<String> columns, Callable<PreparedStatement> loader) {
+
+        try {
+            return cache.get(new Key(entityClass, projectionType, operation, columns), loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new IllegalStateException("can't prepare statement", e);
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public enum Operation {
+        INSERT, UPDATE, SELECT, SELECT_IN, EXISTS, DELETE, TOKEN_RANGE_SELECT, TOKEN_RANGE_COUNT
+    }
+
+    final private static class Key {
+        final private Class<?> entityClass;
+        final private Class<?> projectionType;
+        final private Operation operation;
+        final private List<String> columns;
+
+        Key(Class<?> entityClass, Class<?> projectionType, Operation operation, Collection<String> columns) {
+            this.entityClass = entityClass;
+            this.projectionType = projectionType;
+            this.operation = operation;
+            this.columns = new ArrayList<>(columns);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key that = (Key) o;
+
+            return entityClass.equals(that.entityClass)
+                    && Objects.equals(projectionType, that.projectionType)
+                    && operation == that.operation
+                    && columns.equals(that.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = entityClass.hashCode();
+            result = 31 * result + Objects.hashCode(projectionType);
+            result = 31 * result + operation.hashCode();
+            result = 31 * result + columns.hashCode();
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("Key{");
+            sb.append("entityClass=").append(entityClass.getName());
+            if (projectionType != null)
+                sb.append(", projectionType=").append(projectionType.getName());
+            sb.append(", operation=").append(operation);
+            sb.append(", columns=").append(columns);
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+
+}
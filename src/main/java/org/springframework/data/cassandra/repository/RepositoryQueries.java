@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implementation of a query interface: every method is a {@link RepositoryQuery} parsed and prepared
+ * when the implementation is created.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class RepositoryQueries implements InvocationHandler {
+    final private Class<?> queriesInterface;
+    final private Map<Method, RepositoryQuery> queries;
+
+    private RepositoryQueries(Class<?> queriesInterface, Map<Method, RepositoryQuery> queries) {
+        this.queriesInterface = queriesInterface;
+        this.queries = queries;
+    }
+
+    static <Q> Q create(Class<Q> queriesInterface, BaseCassandraRepository<?, ?> repository) {
+        Assert.isTrue(queriesInterface.isInterface(), queriesInterface.getName() + " is not an interface");
+
+        final Map<Method, RepositoryQuery> queries = new HashMap<>();
+        for (final Method method: queriesInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()))
+                continue;
+            if (method.isDefault())
+                throw new IllegalArgumentException("default method " + method + " is not supported");
+
+            queries.put(method, RepositoryQuery.create(method, repository));
+        }
+
+        final Object proxy = Proxy.newProxyInstance(queriesInterface.getClassLoader(),
+                new Class<?>[]{queriesInterface}, new RepositoryQueries(queriesInterface, queries));
+
+        return queriesInterface.cast(proxy);
+    }
+
+    // the signature of InvocationHandler, args is the argument array of the proxy call
+    @Override
+    @SuppressWarnings("PMD.UseVarargs")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (ReflectionUtils.isEqualsMethod(method))
+            return proxy == args[0];
+        if (ReflectionUtils.isHashCodeMethod(method))
+            return System.identityHashCode(proxy);
+        if (ReflectionUtils.isToStringMethod(method))
+            return "RepositoryQueries{" + queriesInterface.getName() + '}';
+
+        return queries.get(method).execute(args == null ? new Object[0] : args);
+    }
+
+}
@@ -0,0 +1,584 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.IndexMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.querybuilder.Clause;
+import com.datastax.driver.core.querybuilder.Delete;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import com.google.common.collect.Iterables;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.cassandra.mapping.CassandraPersistentEntity;
+import org.springframework.data.cassandra.mapping.CassandraPersistentProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * One method of a query interface: a derived query parsed from the method name or a {@link Query}.
+ * The statement is prepared when the query is created, execution only binds the arguments.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class RepositoryQuery {
+    final private Method method;
+    final private BaseCassandraRepository<?, ?> repository;
+    final private Kind kind;
+    final private Shape shape;
+    final private boolean async;
+    final private Class<?> resultType;
+    final private Function<Row, Object> rowMapper;
+    final private List<Function<Object[], Object>> binders;
+    final private int pageableIndex;
+    final private PreparedStatement prepared;
+
+    private RepositoryQuery(Method method, BaseCassandraRepository<?, ?> repository, Kind kind, ReturnType returnType,
+                            List<Function<Object[], Object>> binders, int pageableIndex, RegularStatement statement) {
+        this.method = method;
+        this.repository = repository;
+        this.kind = kind;
+        this.shape = returnType.shape;
+        this.async = returnType.async;
+        this.resultType = returnType.elementType;
+        this.rowMapper = rowMapper(repository, returnType.elementType);
+        this.binders = binders;
+        this.pageableIndex = pageableIndex;
+
+        if (shape == Shape.SLICE && pageableIndex < 0)
+            throw invalid("a slice needs a Pageable parameter");
+        if (shape != Shape.SLICE && pageableIndex >= 0)
+            throw invalid("a Pageable parameter needs a CassandraSlice result");
+
+        this.prepared = repository.template.prepare(statement);
+    }
+
+    static RepositoryQuery create(Method method, BaseCassandraRepository<?, ?> repository) {
+        final ReturnType returnType = new ReturnType(method);
+        final int pageableIndex = pageableIndex(method);
+
+        final Query query = method.getAnnotation(Query.class);
+
+        // prepared once for all profiles, the profile is applied to the bound statements
+        return repository.withoutExecutionProfile(() -> query == null
+                ? derived(method, repository, returnType, pageableIndex)
+                : annotated(method, repository, returnType, pageableIndex, query.value()));
+    }
+
+    Object execute(Object... args) {
+        final Object[] values = new Object[binders.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = binders.get(i).apply(args);
+        }
+
+        final BoundStatement statement = prepared.bind(values);
+        if (kind == Kind.WRITE) {
+            repository.queryWriteOptions(statement);
+        } else {
+            repository.queryReadOptions(statement);
+        }
+
+        final Pageable pageable = pageableIndex < 0 ? null : (Pageable) args[pageableIndex];
+        final Statement query = pageable == null ? statement : repository.pagedQuery(statement, pageable);
+
+        if (shape == Shape.PUBLISHER)
+            return new ResultSetPublisher<>(() -> repository.template.executeAsync(query),
+                    repository.template::fetchMoreResults, rowMapper, repository.mappingExecutor);
+
+        if (async)
+            return repository.executeQueryAsyncAndTransformResult(query, rs -> transform(rs, pageable));
+
+        return transform(repository.template.execute(query), pageable);
+    }
+
+    private Object transform(ResultSet rs, Pageable pageable) {
+        switch (kind) {
+            case WRITE:
+                // rows written by the query are unknown
+                repository.invalidateAll();
+                return null;
+            case EXISTS:
+                return rs != null && !rs.isExhausted();
+            case COUNT:
+                final long count = BaseCassandraRepository.readCount(rs);
+                return resultType == int.class || resultType == Integer.class ? (Object) Math.toIntExact(count) : count;
+            default:
+                break;
+        }
+
+        switch (shape) {
+            case SINGLE:
+                return rs.isExhausted() ? null : rowMapper.apply(rs.one());
+            case OPTIONAL:
+                return rs.isExhausted() ? Optional.empty() : Optional.ofNullable(rowMapper.apply(rs.one()));
+            case ITERABLE:
+                return repository.getListByResultSet(rs, rowMapper);
+            case STREAM:
+                return StreamSupport.stream(repository.getListByResultSet(rs, rowMapper).spliterator(), false);
+            case SLICE:
+                return repository.getSliceByResultSet(rs, pageable, rowMapper);
+            default:
+                final List<Object> list = new ArrayList<>(rs.getAvailableWithoutFetching());
+                for (final Object entity: repository.getListByResultSet(rs, rowMapper)) {
+                    list.add(entity);
+                }
+                return list;
+        }
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return invalid(method, message);
+    }
+
+    private static IllegalArgumentException invalid(Method method, String message) {
+        return new IllegalArgumentException(message + ": " + method);
+    }
+
+    private static RepositoryQuery annotated(Method method, BaseCassandraRepository<?, ?> repository,
+                                             ReturnType returnType, int pageableIndex, String cql) {
+        final Kind kind;
+        if (isModifyingCql(cql)) {
+            kind = Kind.WRITE;
+        } else if (returnType.shape == Shape.VALUE) {
+            kind = valueKind(method, returnType.elementType);
+        } else {
+            kind = Kind.SELECT;
+        }
+
+        final List<Function<Object[], Object>> binders = new ArrayList<>();
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            if (i == pageableIndex)
+                continue;
+
+            final int index = i;
+            binders.add(args -> args[index] instanceof Enum ? ((Enum<?>) args[index]).name() : args[index]);
+        }
+
+        return new RepositoryQuery(method, repository, kind, returnType, binders, pageableIndex,
+                new SimpleStatement(cql));
+    }
+
+    private static RepositoryQuery derived(Method method, BaseCassandraRepository<?, ?> repository,
+                                           ReturnType returnType, int pageableIndex) {
+        final CassandraPersistentEntity<?> persistentEntity = repository.persistentEntity;
+
+        // properties of a composite id may be named without the id property
+        String prefix = "";
+        PartTree tree;
+        try {
+            tree = new PartTree(method.getName(), repository.getEntityClass());
+        } catch (PropertyReferenceException e) {
+            final CassandraPersistentProperty idProperty = persistentEntity.getIdProperty();
+            if (idProperty == null || !idProperty.isEntity())
+                throw e;
+
+            try {
+                tree = new PartTree(method.getName(), idProperty.getActualType());
+            } catch (PropertyReferenceException ignored) {
+                throw e;
+            }
+            prefix = idProperty.getName() + ".";
+        }
+
+        if (tree.isDistinct())
+            throw invalid(method, "distinct is not supported");
+        if (Iterables.size(tree) > 1)
+            throw invalid(method, "OR is not supported by CQL");
+
+        final Kind kind;
+        if (tree.isDelete()) {
+            kind = Kind.WRITE;
+        } else if (tree.isCountProjection()) {
+            kind = Kind.COUNT;
+        } else if (tree.isExistsProjection()) {
+            kind = Kind.EXISTS;
+        } else {
+            kind = Kind.SELECT;
+        }
+
+        final boolean allowFiltering = method.isAnnotationPresent(AllowFiltering.class);
+        if (allowFiltering && kind == Kind.WRITE)
+            throw invalid(method, "ALLOW FILTERING is only supported by selects");
+
+        final Iterator<Integer> parameters = bindableParameters(method, pageableIndex).iterator();
+        final List<Clause> clauses = new ArrayList<>();
+        final List<String> columns = new ArrayList<>();
+        final Set<String> equalityColumns = new HashSet<>();
+        final List<Function<Object[], Object>> binders = new ArrayList<>();
+
+        for (final PartTree.OrPart parts: tree) {
+            for (final Part part: parts) {
+                if (part.shouldIgnoreCase() != Part.IgnoreCaseType.NEVER)
+                    throw invalid(method, "ignore case is not supported");
+
+                if (part.getNumberOfArguments() > 0 && !parameters.hasNext())
+                    throw invalid(method, "not enough parameters");
+
+                final String path = prefix + part.getProperty().toDotPath();
+                final String column = repository.converter.getColumn(path, persistentEntity);
+                final Function<Object, Object> converter =
+                        repository.converter.getColumnValueConverter(path, persistentEntity);
+                columns.add(column);
+
+                switch (part.getType()) {
+                    case SIMPLE_PROPERTY:
+                        clauses.add(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        equalityColumns.add(column);
+                        break;
+                    case GREATER_THAN:
+                    case AFTER:
+                        clauses.add(QueryBuilder.gt(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        break;
+                    case GREATER_THAN_EQUAL:
+                        clauses.add(QueryBuilder.gte(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        break;
+                    case LESS_THAN:
+                    case BEFORE:
+                        clauses.add(QueryBuilder.lt(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        break;
+                    case LESS_THAN_EQUAL:
+                        clauses.add(QueryBuilder.lte(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        break;
+                    case BETWEEN:
+                        clauses.add(QueryBuilder.gte(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        if (!parameters.hasNext())
+                            throw invalid(method, "not enough parameters");
+                        clauses.add(QueryBuilder.lte(column, QueryBuilder.bindMarker()));
+                        binders.add(argument(parameters.next(), converter));
+                        break;
+                    case IN:
+                        clauses.add(QueryBuilder.in(column, QueryBuilder.bindMarker()));
+                        binders.add(elementsArgument(parameters.next(), converter));
+                        equalityColumns.add(column);
+                        break;
+                    case TRUE:
+                        // a bind marker, inline values are not accepted by prepare
+                        clauses.add(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+                        binders.add(args -> converter.apply(Boolean.TRUE));
+                        break;
+                    case FALSE:
+                        clauses.add(QueryBuilder.eq(column, QueryBuilder.bindMarker()));
+                        binders.add(args -> converter.apply(Boolean.FALSE));
+                        break;
+                    default:
+                        throw invalid(method, "keyword " + part.getType() + " is not supported");
+                }
+            }
+        }
+
+        if (parameters.hasNext())
+            throw invalid(method, "too many parameters");
+
+        final TableKey key = new TableKey(repository);
+        if (kind == Kind.WRITE) {
+            for (final String column: columns) {
+                if (!key.primaryKey.contains(column))
+                    throw invalid(method, "delete by column " + column + " out of the primary key");
+            }
+            if (!equalityColumns.containsAll(key.partitionKey))
+                throw invalid(method, "delete must restrict every column of the partition key " + key.partitionKey
+                        + " by equality or IN");
+        } else if (!allowFiltering) {
+            for (final String column: columns) {
+                if (!key.primaryKey.contains(column) && !key.indexed.contains(column))
+                    throw invalid(method, "column " + column + " is neither a key nor indexed, filtering by it needs "
+                            + AllowFiltering.class.getSimpleName());
+            }
+        }
+
+        final RegularStatement statement;
+        switch (kind) {
+            case WRITE:
+                final Delete delete = QueryBuilder.delete().from(repository.getTable());
+                for (final Clause clause: clauses) {
+                    delete.where().and(clause);
+                }
+                statement = delete;
+                break;
+            case COUNT:
+                statement = filtering(where(QueryBuilder.select().countAll().from(repository.getTable()), clauses),
+                        allowFiltering);
+                break;
+            case EXISTS:
+                if (columns.isEmpty())
+                    throw invalid(method, "exists needs criteria");
+                statement = filtering(where(QueryBuilder.select(columns.get(0)).from(repository.getTable()), clauses)
+                        .limit(1), allowFiltering);
+                break;
+            default:
+                final Select select = where(selectFor(repository, returnType.elementType), clauses);
+                for (final Sort.Order order: tree.getSort()) {
+                    final String column = repository.converter.getColumn(prefix + order.getProperty(), persistentEntity);
+                    select.orderBy(order.isAscending() ? QueryBuilder.asc(column) : QueryBuilder.desc(column));
+                }
+                if (tree.isLimiting())
+                    select.limit(tree.getMaxResults());
+                statement = filtering(select, allowFiltering);
+        }
+
+        if (kind != Kind.SELECT && returnType.shape != Shape.VALUE)
+            throw invalid(method, kind + " query can't return " + returnType.shape);
+
+        return new RepositoryQuery(method, repository, kind, returnType, binders, pageableIndex, statement);
+    }
+
+    private static Select selectFor(BaseCassandraRepository<?, ?> repository, Class<?> elementType) {
+        if (elementType == Row.class || elementType.isAssignableFrom(repository.getEntityClass()))
+            return repository.baseSelect();
+
+        return repository.baseSelect(elementType);
+    }
+
+    private static Select where(Select select, List<Clause> clauses) {
+        for (final Clause clause: clauses) {
+            select.where().and(clause);
+        }
+
+        return select;
+    }
+
+    private static Select filtering(Select select, boolean allowFiltering) {
+        return allowFiltering ? select.allowFiltering() : select;
+    }
+
+    private static Function<Row, Object> rowMapper(BaseCassandraRepository<?, ?> repository, Class<?> elementType) {
+        if (elementType == Row.class)
+            return row -> row;
+        if (elementType.isAssignableFrom(repository.getEntityClass()))
+            return repository::readEntity;
+
+        return row -> repository.readProjection(elementType, row);
+    }
+
+    private static Function<Object[], Object> argument(int index, Function<Object, Object> converter) {
+        return args -> converter.apply(args[index]);
+    }
+
+    private static Function<Object[], Object> elementsArgument(int index, Function<Object, Object> converter) {
+        return args -> {
+            final Object value = args[index];
+            if (value == null)
+                return null;
+
+            final List<Object> elements = new ArrayList<>();
+            if (value.getClass().isArray()) {
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    elements.add(converter.apply(Array.get(value, i)));
+                }
+            } else if (value instanceof Iterable) {
+                for (final Object element: (Iterable<?>) value) {
+                    elements.add(converter.apply(element));
+                }
+            } else {
+                elements.add(converter.apply(value));
+            }
+
+            return elements;
+        };
+    }
+
+    private static int pageableIndex(Method method) {
+        final Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (Pageable.class.isAssignableFrom(types[i]))
+                return i;
+        }
+
+        return -1;
+    }
+
+    private static List<Integer> bindableParameters(Method method, int pageableIndex) {
+        final List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            if (i != pageableIndex)
+                indexes.add(i);
+        }
+
+        return Collections.unmodifiableList(indexes);
+    }
+
+    private static boolean isModifyingCql(String cql) {
+        final String trimmed = cql.trim();
+
+        return startsWithIgnoreCase(trimmed, "INSERT")
+                || startsWithIgnoreCase(trimmed, "UPDATE")
+                || startsWithIgnoreCase(trimmed, "DELETE");
+    }
+
+    private static boolean startsWithIgnoreCase(String str, String prefix) {
+        return str.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    private static Kind valueKind(Method method, Class<?> type) {
+        if (type == boolean.class || type == Boolean.class)
+            return Kind.EXISTS;
+        if (type == long.class || type == Long.class || type == int.class || type == Integer.class)
+            return Kind.COUNT;
+
+        throw invalid(method, "unsupported result type " + type.getName());
+    }
+
+    enum Kind {
+        SELECT, COUNT, EXISTS, WRITE
+    }
+
+    enum Shape {
+        SINGLE, OPTIONAL, ITERABLE, LIST, STREAM, SLICE, PUBLISHER, VALUE
+    }
+
+    /**
+     * Key and indexed columns of the table. They are read from the table metadata when the session is bound
+     * to a keyspace, otherwise from the mapping: the id columns are the primary key, a simple id is
+     * the partition key, the first column of a composite id is assumed to be the partition key.
+     */
+    final private static class TableKey {
+        final private Set<String> partitionKey = new HashSet<>();
+        final private Set<String> primaryKey = new HashSet<>();
+        final private Set<String> indexed = new HashSet<>();
+
+        TableKey(BaseCassandraRepository<?, ?> repository) {
+            final String keyspace = repository.template.getLoggedKeyspace();
+            final KeyspaceMetadata keyspaceMetadata = keyspace == null
+                    ? null : repository.template.getClusterMetadata().getKeyspace(keyspace);
+            final TableMetadata table = keyspaceMetadata == null ? null : keyspaceMetadata.getTable(repository.getTable());
+
+            final CassandraPersistentEntity<?> persistentEntity = repository.persistentEntity;
+            persistentEntity.doWithProperties((CassandraPersistentProperty property) -> {
+                if (property.isIndexed())
+                    indexed.add(property.getColumnName());
+            });
+
+            if (table == null) {
+                final List<String> idColumns = new ArrayList<>();
+                idColumns(repository, (CassandraPersistentProperty) persistentEntity.getIdProperty(), idColumns);
+                primaryKey.addAll(idColumns);
+                if (!idColumns.isEmpty())
+                    partitionKey.add(idColumns.get(0));
+            } else {
+                for (final ColumnMetadata column: table.getPartitionKey()) {
+                    partitionKey.add(column.getName());
+                }
+                for (final ColumnMetadata column: table.getPrimaryKey()) {
+                    primaryKey.add(column.getName());
+                }
+                for (final IndexMetadata index: table.getIndexes()) {
+                    indexed.add(index.getTarget());
+                }
+            }
+        }
+
+        private static void idColumns(BaseCassandraRepository<?, ?> repository, CassandraPersistentProperty property,
+                                      List<String> columns) {
+            if (property == null)
+                return;
+
+            if (property.isEntity()) {
+                final CassandraPersistentEntity<?> idEntity =
+                        repository.converter.getMappingContext().getPersistentEntity(property.getActualType());
+                idEntity.doWithProperties((CassandraPersistentProperty idProperty) ->
+                        idColumns(repository, idProperty, columns));
+            } else {
+                columns.add(property.getColumnName());
+            }
+        }
+    }
+
+    /**
+     * Result of a method: optional async wrapper, container and element type.
+     */
+    final private static class ReturnType {
+        final private boolean async;
+        final private Shape shape;
+        final private Class<?> elementType;
+
+        ReturnType(Method method) {
+            ResolvableType type = ResolvableType.forMethodReturnType(method);
+
+            async = CompletableFuture.class.equals(type.resolve());
+            if (async)
+                type = type.getGeneric(0);
+
+            final Class<?> raw = type.resolve(Object.class);
+            final Class<?> element = type.getGeneric(0).resolve(Object.class);
+
+            if (raw == void.class || raw == Void.class || raw.isPrimitive() || raw == Boolean.class
+                    || raw == Long.class || raw == Integer.class) {
+                shape = Shape.VALUE;
+                elementType = raw;
+            } else if (Publisher.class.equals(raw)) {
+                shape = Shape.PUBLISHER;
+                elementType = element;
+            } else if (Optional.class.equals(raw)) {
+                shape = Shape.OPTIONAL;
+                elementType = element;
+            } else if (Stream.class.equals(raw)) {
+                shape = Shape.STREAM;
+                elementType = element;
+            } else if (Slice.class.isAssignableFrom(raw)) {
+                shape = Shape.SLICE;
+                elementType = element;
+            } else if (List.class.equals(raw) || Collection.class.equals(raw)) {
+                shape = Shape.LIST;
+                elementType = element;
+            } else if (Iterable.class.equals(raw)) {
+                shape = Shape.ITERABLE;
+                elementType = element;
+            } else {
+                shape = Shape.SINGLE;
+                elementType = raw;
+            }
+
+            if (async && (shape == Shape.PUBLISHER || shape == Shape.STREAM))
+                throw invalid(method, "unsupported async result " + shape);
+        }
+    }
+
+}
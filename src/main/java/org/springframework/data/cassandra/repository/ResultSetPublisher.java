@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.cassandra.core.CassandraExceptionTranslator;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cold {@link Publisher} of the rows of a query. The query is executed on the first request of every
+ * subscription and the next page is fetched only when the subscriber has outstanding demand,
+ * so a slow consumer never makes the driver buffer more than one page. Rows of a fetched page are
+ * mapped and delivered on the given executor, by default on the driver thread that fetched it.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class ResultSetPublisher<T> implements Publisher<T> {
+    final static private PersistenceExceptionTranslator EXCEPTION_TRANSLATOR = new CassandraExceptionTranslator();
+
+    final private Supplier<ListenableFuture<ResultSet>> query;
+    final private Function<ResultSet, ListenableFuture<ResultSet>> fetchMore;
+    final private Function<Row, T> rowMapper;
+    final private Executor executor;
+
+    ResultSetPublisher(Supplier<ListenableFuture<ResultSet>> query, Function<Row, T> rowMapper) {
+        this(query, ResultSet::fetchMoreResults, rowMapper, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * @param fetchMore fetches the next page of a result set, e.g. measured by the template
+     * @param executor maps and delivers the rows of fetched pages
+     */
+    ResultSetPublisher(Supplier<ListenableFuture<ResultSet>> query,
+                       Function<ResultSet, ListenableFuture<ResultSet>> fetchMore, Function<Row, T> rowMapper,
+                       Executor executor) {
+        this.query = query;
+        this.fetchMore = fetchMore;
+        this.rowMapper = rowMapper;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Assert.notNull(subscriber, "subscriber");
+
+        subscriber.onSubscribe(new ResultSetSubscription(subscriber));
+    }
+
+    private static Throwable translate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            final RuntimeException translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible((RuntimeException) t);
+            return translated == null ? t : translated;
+        }
+
+        return t;
+    }
+
+    final private class ResultSetSubscription implements Subscription {
+        final private Subscriber<? super T> subscriber;
+        final private AtomicLong requested = new AtomicLong();
+        // serializes signals, see drain()
+        final private AtomicInteger wip = new AtomicInteger();
+
+        private volatile ResultSet resultSet;
+        private volatile Throwable error;
+        private volatile boolean fetching;
+        private volatile boolean cancelled;
+        private boolean started;
+        private boolean done;
+
+        ResultSetSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("requested " + n + ", demand must be positive");
+            } else {
+                addDemand(n);
+            }
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void addDemand(long n) {
+            while (true) {
+                final long current = requested.get();
+                if (current == Long.MAX_VALUE)
+                    return;
+
+                final long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next))
+                    return;
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            if (cancelled || done)
+                return;
+
+            if (error != null) {
+                fail(error);
+                return;
+            }
+
+            if (requested.get() == 0)
+                return;
+
+            final ResultSet rs = resultSet;
+            if (rs == null) {
+                if (!started) {
+                    started = true;
+                    fetch(this::startQuery);
+                }
+                return;
+            }
+
+            final long demand = requested.get();
+            long emitted = 0;
+
+            while (emitted < demand && rs.getAvailableWithoutFetching() > 0) {
+                if (cancelled)
+                    return;
+
+                final T entity;
+                try {
+                    entity = rowMapper.apply(rs.one());
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+
+                subscriber.onNext(entity);
+                emitted++;
+            }
+
+            if (emitted > 0 && demand != Long.MAX_VALUE)
+                requested.addAndGet(-emitted);
+
+            if (rs.getAvailableWithoutFetching() == 0) {
+                if (rs.isFullyFetched()) {
+                    done = true;
+                    subscriber.onComplete();
+                } else if (!fetching && requested.get() > 0) {
+                    fetching = true;
+                    fetch(() -> fetchMore.apply(rs));
+                }
+            }
+        }
+
+        private ListenableFuture<ResultSet> startQuery() {
+            return query.get();
+        }
+
+        private void fetch(Supplier<ListenableFuture<ResultSet>> page) {
+            final ListenableFuture<ResultSet> future;
+            try {
+                future = page.get();
+            } catch (RuntimeException e) {
+                error = e;
+                drain();
+                return;
+            }
+
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    resultSet = result;
+                    fetching = false;
+                    drain();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    error = t;
+                    drain();
+                }
+            }, this::dispatch);
+        }
+
+        private void dispatch(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                error = e;
+                drain();
+            }
+        }
+
+        private void fail(Throwable t) {
+            done = true;
+            subscriber.onError(translate(t));
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.TokenRange;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token ranges already scanned by a token range scan. Ranges are recorded as soon as they are
+ * fully consumed, so the set may be persisted at any moment and handed to the next scan to resume it.
+ * Resuming is valid only with the same split count and an unchanged ring.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class ScanCheckpoint {
+    final private Set<String> completedRanges = ConcurrentHashMap.newKeySet();
+
+    public ScanCheckpoint() {
+        //
+    }
+
+    public ScanCheckpoint(Collection<String> completedRanges) {
+        this.completedRanges.addAll(completedRanges);
+    }
+
+    public boolean isCompleted(TokenRange range) {
+        return completedRanges.contains(range.toString());
+    }
+
+    public void markCompleted(TokenRange range) {
+        completedRanges.add(range.toString());
+    }
+
+    /**
+     * @return snapshot of completed ranges
+     */
+    public Set<String> getCompletedRanges() {
+        return Collections.unmodifiableSet(new HashSet<>(completedRanges));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ScanCheckpoint{");
+        sb.append("completedRanges=").append(completedRanges.size());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.util.Assert;
+
+/**
+ * Options of the exact token range count, see {@link CountMode#TOKEN_RANGES}.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class TokenRangeCountOptions {
+    private int splits;
+    private int parallelism = 8;
+    private int rangeTimeoutMillis;
+    private int retries = 2;
+    private int retryDelayMillis = 100;
+
+    /**
+     * @return minimum number of sub-ranges the ring is split into, 0 means 4 per ring range
+     */
+    public int getSplits() {
+        return splits;
+    }
+
+    public void setSplits(int splits) {
+        Assert.isTrue(splits >= 0, "splits must not be negative");
+        this.splits = splits;
+    }
+
+    /**
+     * @return number of sub-ranges counted concurrently
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        Assert.isTrue(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return client read timeout of one sub-range count, 0 means the driver default
+     */
+    public int getRangeTimeoutMillis() {
+        return rangeTimeoutMillis;
+    }
+
+    public void setRangeTimeoutMillis(int rangeTimeoutMillis) {
+        Assert.isTrue(rangeTimeoutMillis >= 0, "rangeTimeoutMillis must not be negative");
+        this.rangeTimeoutMillis = rangeTimeoutMillis;
+    }
+
+    /**
+     * @return number of retries of a failed sub-range count
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        Assert.isTrue(retries >= 0, "retries must not be negative");
+        this.retries = retries;
+    }
+
+    /**
+     * @return delay of the first retry of a sub-range count, doubled for each further retry
+     */
+    public int getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    public void setRetryDelayMillis(int retryDelayMillis) {
+        Assert.isTrue(retryDelayMillis >= 0, "retryDelayMillis must not be negative");
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TokenRangeCountOptions{");
+        sb.append("splits=").append(splits);
+        sb.append(", parallelism=").append(parallelism);
+        sb.append(", rangeTimeoutMillis=").append(rangeTimeoutMillis);
+        sb.append(", retries=").append(retries);
+        sb.append(", retryDelayMillis=").append(retryDelayMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
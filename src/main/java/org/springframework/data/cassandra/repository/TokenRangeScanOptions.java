@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.springframework.util.Assert;
+
+/**
+ * Options of a token range scan.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class TokenRangeScanOptions {
+    private int splits;
+    private int parallelism = 8;
+    private int fetchSize = 1000;
+
+    /**
+     * @return minimum number of sub-ranges the ring is split into, 0 means 4 per ring range
+     */
+    public int getSplits() {
+        return splits;
+    }
+
+    public void setSplits(int splits) {
+        Assert.isTrue(splits >= 0, "splits must not be negative");
+        this.splits = splits;
+    }
+
+    /**
+     * @return number of sub-ranges scanned concurrently
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        Assert.isTrue(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        Assert.isTrue(fetchSize > 0, "fetchSize must be positive");
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("TokenRangeScanOptions{");
+        sb.append("splits=").append(splits);
+        sb.append(", parallelism=").append(parallelism);
+        sb.append(", fetchSize=").append(fetchSize);
+        sb.append('}');
+        return sb.toString();
+    }
+}
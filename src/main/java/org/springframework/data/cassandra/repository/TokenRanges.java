@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Splitting of the token ring for token range queries.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class TokenRanges {
+    final private static int DEFAULT_SPLITS_PER_RANGE = 4;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TokenRanges() {}
+
+    /**
+     * Splits every ring range evenly so that there are at least the given number of sub-ranges.
+     * Wrapping ranges are unwrapped, the result is sorted and never wraps.
+     *
+     * @param metadata cluster metadata
+     * @param splits minimum number of sub-ranges, 0 means default
+     * @return non-wrapping sub-ranges covering the whole ring
+     */
+    static List<TokenRange> split(Metadata metadata, int splits) {
+        final TreeSet<TokenRange> ringRanges = new TreeSet<>(metadata.getTokenRanges());
+        if (ringRanges.isEmpty())
+            throw new IllegalStateException("token ranges are not known, is token metadata disabled?");
+
+        final int perRange = splits == 0
+                ? DEFAULT_SPLITS_PER_RANGE
+                : Math.max(1, (splits + ringRanges.size() - 1) / ringRanges.size());
+
+        final List<TokenRange> result = new ArrayList<>(ringRanges.size() * perRange);
+        for (final TokenRange ringRange: ringRanges) {
+            for (final TokenRange split: perRange == 1 ? singleton(ringRange) : ringRange.splitEvenly(perRange)) {
+                result.addAll(split.unwrap());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return true if the range ends at the end of the ring, its end must not be used as an upper bound
+     */
+    static boolean isOpenEnded(TokenRange range) {
+        return range.getEnd().compareTo(range.getStart()) <= 0;
+    }
+
+    /**
+     * @return partition key column names of the table in key order
+     */
+    static String[] partitionKeyColumns(Metadata metadata, String keyspace, String table) {
+        if (keyspace == null)
+            throw new IllegalStateException("session is not bound to a keyspace");
+
+        final KeyspaceMetadata keyspaceMetadata = metadata.getKeyspace(keyspace);
+        final TableMetadata tableMetadata = keyspaceMetadata == null ? null : keyspaceMetadata.getTable(table);
+        if (tableMetadata == null)
+            throw new IllegalStateException("no metadata for table " + keyspace + "." + table);
+
+        final List<ColumnMetadata> partitionKey = tableMetadata.getPartitionKey();
+        final String[] columns = new String[partitionKey.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = partitionKey.get(i).getName();
+        }
+
+        return columns;
+    }
+
+    private static List<TokenRange> singleton(TokenRange range) {
+        final List<TokenRange> list = new ArrayList<>(1);
+        list.add(range);
+        return list;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Additive increase, multiplicative decrease limiter. The limit grows by one on a fast request while at least
+ * half of it is used, and is multiplied by backoffRatio on a dropped request or one slower than maxLatencyMillis.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class AimdConcurrencyLimiter implements ConcurrencyLimiter {
+    final private AtomicInteger inFlight = new AtomicInteger();
+    final private LongAdder rejected = new LongAdder();
+    private volatile int limit = 64;
+    private int minLimit = 4;
+    private int maxLimit = 1024;
+    private double backoffRatio = 0.9;
+    private long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+    public void setInitialLimit(int initialLimit) {
+        Assert.isTrue(initialLimit > 0, "initialLimit must be positive");
+        this.limit = initialLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        Assert.isTrue(minLimit > 0, "minLimit must be positive");
+        this.minLimit = minLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        Assert.isTrue(maxLimit > 0, "maxLimit must be positive");
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @param backoffRatio factor the limit is multiplied by on overload, between 0 and 1
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        Assert.isTrue(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be between 0 and 1");
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * @param maxLatencyMillis latency above which a request counts as overload
+     */
+    public void setMaxLatencyMillis(long maxLatencyMillis) {
+        Assert.isTrue(maxLatencyMillis > 0, "maxLatencyMillis must be positive");
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return false;
+            }
+
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    @Override
+    public void onSuccess(long latencyNanos) {
+        final int current = inFlight.getAndDecrement();
+
+        if (latencyNanos > maxLatencyNanos) {
+            decrease();
+        } else if (current * 2 >= limit) {
+            increase();
+        }
+    }
+
+    @Override
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    @Override
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    @Override
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private synchronized void increase() {
+        if (limit < maxLimit)
+            limit++;
+    }
+
+    private synchronized void decrease() {
+        limit = Math.max(minLimit, (int) (limit * backoffRatio));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("AimdConcurrencyLimiter{");
+        sb.append("limit=").append(limit);
+        sb.append(", inFlight=").append(inFlight);
+        sb.append(", rejected=").append(rejected);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -16,6 +16,7 @@
 package org.springframework.data.cassandra.template;
 
 import com.datastax.driver.core.ConsistencyLevel;
+import org.springframework.util.Assert;
 
 /**
  * Date: 18.03.14 19:24
@@ -26,6 +27,8 @@ final public class BatchAttributes {
     private Long timestamp;
     private ConsistencyLevel consistencyLevel;
     private boolean unlogged;
+    private int maxStatements;
+    private long maxBytes;
 
     public Long getTimestamp() {
         return timestamp;
@@ -51,6 +54,39 @@ final public class BatchAttributes {
         this.unlogged = unlogged;
     }
 
+    /**
+     * @return maximum number of statements of one batch, 0 means no limit
+     */
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    public void setMaxStatements(int maxStatements) {
+        Assert.isTrue(maxStatements >= 0, "maxStatements must not be negative");
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * @return maximum estimated size of the bound values of one batch, 0 means no limit
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        Assert.isTrue(maxBytes >= 0, "maxBytes must not be negative");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A split logged batch is atomic only per part, a failed part leaves the other parts written.
+     *
+     * @return true if a batch may be split into several batches
+     */
+    public boolean isLimited() {
+        return maxStatements > 0 || maxBytes > 0;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -59,6 +95,8 @@ final public class BatchAttributes {
         final BatchAttributes that = (BatchAttributes) o;
 
         if (unlogged != that.unlogged) return false;
+        if (maxStatements != that.maxStatements) return false;
+        if (maxBytes != that.maxBytes) return false;
         if (consistencyLevel != that.consistencyLevel) return false;
         if (timestamp != null ? !timestamp.equals(that.timestamp) : that.timestamp != null) return false;
 
@@ -70,6 +108,8 @@ final public class BatchAttributes {
         int result = timestamp != null ? timestamp.hashCode() : 0;
         result = 31 * result + (consistencyLevel != null ? consistencyLevel.hashCode() : 0);
         result = 31 * result + (unlogged ? 1 : 0);
+        result = 31 * result + maxStatements;
+        result = 31 * result + (int) (maxBytes ^ (maxBytes >>> 32));
         return result;
     }
 
@@ -79,6 +119,8 @@ final public class BatchAttributes {
         sb.append("timestamp=").append(timestamp);
         sb.append(", consistencyLevel=").append(consistencyLevel);
         sb.append(", unlogged=").append(unlogged);
+        sb.append(", maxStatements=").append(maxStatements);
+        sb.append(", maxBytes=").append(maxBytes);
         sb.append('}');
         return sb.toString();
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sizes of the batches applied by {@link CassandraTemplateImpl}.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class BatchStats {
+    final private LongAdder batchCount = new LongAdder();
+    final private LongAdder statementCount = new LongAdder();
+    final private LongAdder byteCount = new LongAdder();
+    final private LongAdder splitCount = new LongAdder();
+    final private AtomicLong maxStatements = new AtomicLong();
+    final private AtomicLong maxBytes = new AtomicLong();
+
+    void recordBatch(int statements, long bytes) {
+        batchCount.increment();
+        statementCount.add(statements);
+        byteCount.add(bytes);
+        maxStatements.accumulateAndGet(statements, Math::max);
+        maxBytes.accumulateAndGet(bytes, Math::max);
+    }
+
+    void recordSplit() {
+        splitCount.increment();
+    }
+
+    /**
+     * @return number of batch statements sent
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return number of statements of all batches
+     */
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    /**
+     * @return estimated size of the bound values of all batches, only batches with a byte limit are estimated
+     */
+    public long getByteCount() {
+        return byteCount.sum();
+    }
+
+    /**
+     * @return number of applied batches that were split into several batch statements
+     */
+    public long getSplitCount() {
+        return splitCount.sum();
+    }
+
+    public long getMaxStatements() {
+        return maxStatements.get();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BatchStats{");
+        sb.append("batchCount=").append(getBatchCount());
+        sb.append(", statementCount=").append(getStatementCount());
+        sb.append(", byteCount=").append(getByteCount());
+        sb.append(", splitCount=").append(getSplitCount());
+        sb.append(", maxStatements=").append(getMaxStatements());
+        sb.append(", maxBytes=").append(getMaxBytes());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -15,9 +15,14 @@
  */
 package org.springframework.data.cassandra.template;
 
+import com.datastax.driver.core.Metadata;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Date: 27.12.13 12:05
@@ -30,10 +35,33 @@ public interface CassandraTemplate {
     ResultSet execute(Statement statement);
     ResultSetFuture executeAsync(String query);
     ResultSetFuture executeAsync(Statement statement);
+    /**
+     * Fetches the next page like {@link ResultSet#fetchMoreResults()}, the fetch is measured like an execution.
+     *
+     * @param rs result set of a statement executed by this template
+     * @return future of the result set with the next page
+     */
+    ListenableFuture<ResultSet> fetchMoreResults(ResultSet rs);
+    PreparedStatement prepare(RegularStatement statement);
+    Metadata getClusterMetadata();
+    /**
+     * @param name profile name
+     * @return profile
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    ExecutionProfile getExecutionProfile(String name);
+    String getLoggedKeyspace();
 
+    boolean isBatchStarted();
     void startBatch(BatchAttributes batchAttributes);
     void cancelBatch();
     void applyBatch();
+    /**
+     * Applies the batch like {@link #applyBatch()} without waiting: a nested batch only leaves its level
+     * and an empty batch is not sent, both return a completed future.
+     *
+     * @return future of the batch result, null result if nothing was sent
+     */
     ResultSetFuture applyBatchAsync();
 
 }
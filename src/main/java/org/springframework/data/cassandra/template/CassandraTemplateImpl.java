@@ -16,12 +16,39 @@
 package org.springframework.data.cassandra.template;
 
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.BusyConnectionException;
+import com.datastax.driver.core.exceptions.BusyPoolException;
 import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
 import com.datastax.driver.core.querybuilder.*;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.support.PersistenceExceptionTranslator;
 import org.springframework.data.cassandra.core.CassandraExceptionTranslator;
+import org.springframework.data.cassandra.metrics.MetricTags;
+import org.springframework.data.cassandra.metrics.MetricsSink;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+import org.springframework.data.cassandra.util.StatementUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 /**
  * Date: 05.02.14 16:29
@@ -37,16 +64,101 @@ public class CassandraTemplateImpl implements CassandraTemplate {
 
     protected ThreadLocal<BatchContext> batchContext = new ThreadLocal<>();
 
+    protected Map<String, ExecutionProfile> executionProfiles = new HashMap<>();
+
+    protected SingleFlight singleFlight;
+
+    final protected BatchStats batchStats = new BatchStats();
+
+    protected ConcurrencyLimiter concurrencyLimiter;
+
+    protected boolean idempotenceMarking = true;
+
+    protected MetricsSink metricsSink;
+
+    protected SlowQueryLog slowQueryLog;
+
     public void setSession(Session session) {
         this.session = session;
     }
 
+    public void setExecutionProfiles(Collection<ExecutionProfile> executionProfiles) {
+        final Map<String, ExecutionProfile> profiles = new HashMap<>();
+        for (final ExecutionProfile profile: executionProfiles) {
+            if (profiles.put(profile.getName(), profile) != null)
+                throw new IllegalArgumentException("duplicate execution profile " + profile.getName());
+        }
+
+        this.executionProfiles = profiles;
+    }
+
+    /**
+     * Enables coalescing of identical concurrent reads: a read statement with the same query, values
+     * and options as one already in flight waits for its result instead of being sent again.
+     * Statements marked not idempotent are always sent.
+     *
+     * @param singleFlight true to enable
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight ? new SingleFlight() : null;
+    }
+
+    /**
+     * Limits the number of requests in flight. A request above the limit is rejected at once with
+     * {@link ConcurrencyLimitExceededException} instead of waiting in the queue of the connection pool,
+     * an asynchronous request returns a future failed with it.
+     *
+     * @param concurrencyLimiter limiter or null to send every request
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Marks statements without idempotence set before they are executed, so retries and speculative executions
+     * apply to them: selects are idempotent, inserts, updates and deletes unless they are lightweight transactions,
+     * counter or list updates. Built statements are left to the driver. Enabled by default.
+     *
+     * @param idempotenceMarking false to leave idempotence to the driver defaults
+     */
+    public void setIdempotenceMarking(boolean idempotenceMarking) {
+        this.idempotenceMarking = idempotenceMarking;
+    }
+
+    /**
+     * Records latency, rows and page fetches of every executed statement tagged by table, statement type,
+     * consistency level and outcome. Statements added to a batch are recorded as a part of the batch.
+     *
+     * @param metricsSink sink or null to record nothing
+     */
+    public void setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+    }
+
+    /**
+     * @param slowQueryLog log of slow and sampled statements or null
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * @return sizes of the applied batches
+     */
+    public BatchStats getBatchStats() {
+        return batchStats;
+    }
+
     @Override
     public ResultSet execute(String query) {
         log.trace("{}", query);
 
         try {
-            return session.execute(query);
+            return send(new SimpleStatement(query), () -> session.execute(query));
         } catch (DriverException e) {
             throw EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
         }
@@ -63,8 +175,16 @@ public class CassandraTemplateImpl implements CassandraTemplate {
         } else {
             log.trace("{} consistency={}", statement, statement.getConsistencyLevel());
 
+            if (idempotenceMarking)
+                markIdempotent(statement);
+
             try {
-                return session.execute(statement);
+                final List<Object> key = singleFlightKey(statement);
+                if (key != null)
+                    return singleFlight.execute(key, () -> sendAsync(statement, () -> session.executeAsync(statement)))
+                            .getUninterruptibly();
+
+                return send(statement, () -> session.execute(statement));
             } catch (DriverException e) {
                 throw EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
             }
@@ -76,7 +196,7 @@ public class CassandraTemplateImpl implements CassandraTemplate {
         log.trace("{}", query);
 
         try {
-            return session.executeAsync(query);
+            return sendAsync(new SimpleStatement(query), () -> session.executeAsync(query));
         } catch (DriverException e) {
             throw EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
         }
@@ -84,15 +204,95 @@ public class CassandraTemplateImpl implements CassandraTemplate {
 
     @Override
     public ResultSetFuture executeAsync(Statement statement) {
+        final BatchContext bc = batchContext.get();
+
+        if (bc != null && isModifyingStatement(statement)) {
+            // same as execute: the write is sent by applyBatch, the future of the caller completes now
+            bc.addStatement(statement);
+
+            return completedFuture(null);
+        }
+
         log.trace("{} consistency={}", statement, statement.getConsistencyLevel());
 
+        if (idempotenceMarking)
+            markIdempotent(statement);
+
+        try {
+            final List<Object> key = singleFlightKey(statement);
+            if (key != null)
+                return singleFlight.execute(key, () -> sendAsync(statement, () -> session.executeAsync(statement)));
+
+            return sendAsync(statement, () -> session.executeAsync(statement));
+        } catch (DriverException e) {
+            throw EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
+        }
+    }
+
+    @Override
+    public PreparedStatement prepare(RegularStatement statement) {
+        log.trace("preparing {}", statement);
+
         try {
-            return session.executeAsync(statement);
+            return session.prepare(statement);
         } catch (DriverException e) {
             throw EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
         }
     }
 
+    /**
+     * Page fetches are recorded in the metrics sink with pageFetch set, the other page
+     * fetches of the driver, e.g. by iterating the result set, are not seen here.
+     */
+    @Override
+    public ListenableFuture<ResultSet> fetchMoreResults(ResultSet rs) {
+        final MetricsSink sink = metricsSink;
+        if (sink == null || rs.isFullyFetched())
+            return rs.fetchMoreResults();
+
+        final Statement statement = rs.getExecutionInfo().getStatement();
+        final long start = System.nanoTime();
+        final ListenableFuture<ResultSet> future = rs.fetchMoreResults();
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                record(sink, statement, System.nanoTime() - start, result, null, true);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                record(sink, statement, System.nanoTime() - start, null, t, true);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+
+    @Override
+    public Metadata getClusterMetadata() {
+        return session.getCluster().getMetadata();
+    }
+
+    @Override
+    public ExecutionProfile getExecutionProfile(String name) {
+        final ExecutionProfile profile = executionProfiles.get(name);
+        if (profile == null)
+            throw new IllegalArgumentException("unknown execution profile " + name);
+
+        return profile;
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+        return session.getLoggedKeyspace();
+    }
+
+    @Override
+    public boolean isBatchStarted() {
+        return batchContext.get() != null;
+    }
+
     @Override
     public void startBatch(BatchAttributes batchAttributes) {
         if (log.isTraceEnabled())
@@ -138,7 +338,7 @@ public class CassandraTemplateImpl implements CassandraTemplate {
 
         if (bc.isZeroNestingLevel()) {
             if (!bc.isEmpty())
-                execute(bc.getBatchStatement());
+                executeBatches(bc);
             batchContext.set(null);
         } else {
             bc.decrementNestingLevel();
@@ -155,45 +355,337 @@ public class CassandraTemplateImpl implements CassandraTemplate {
         if (bc == null)
             throw new IllegalStateException("Trying to apply batch, but it is not started");
 
-        if (bc.isZeroNestingLevel() && !bc.isEmpty()) {
-            batchContext.set(null);
-            return executeAsync(bc.getBatchStatement());
+        if (!bc.isZeroNestingLevel()) {
+            bc.decrementNestingLevel();
+            return completedFuture(null);
         }
 
-        throw new IllegalStateException("Nesting is not supported by asyncBatch");
+        batchContext.set(null);
+
+        return bc.isEmpty() ? completedFuture(null) : executeBatchesAsync(bc);
+    }
+
+    private static ResultSetFuture completedFuture(ResultSet rs) {
+        final SettableResultSetFuture future = new SettableResultSetFuture();
+        future.complete(rs);
+
+        return future;
+    }
+
+    private static ResultSetFuture failedFuture(Throwable t) {
+        final SettableResultSetFuture future = new SettableResultSetFuture();
+        future.fail(t);
+
+        return future;
+    }
+
+    /**
+     * Split batches are sent concurrently, the first failure is thrown once all of them completed.
+     */
+    private void executeBatches(BatchContext bc) {
+        final List<BatchStatement> batches = bc.getBatchStatements();
+        recordBatches(bc);
+
+        if (batches.size() == 1) {
+            execute(batches.get(0));
+            return;
+        }
+
+        final List<ResultSetFuture> futures = new ArrayList<>(batches.size());
+        for (final BatchStatement batch: batches) {
+            futures.add(executeAsync(batch));
+        }
+
+        RuntimeException failure = null;
+        for (final ResultSetFuture future: futures) {
+            try {
+                future.getUninterruptibly();
+            } catch (DriverException e) {
+                if (failure == null)
+                    failure = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private ResultSetFuture executeBatchesAsync(BatchContext bc) {
+        final List<BatchStatement> batches = bc.getBatchStatements();
+        recordBatches(bc);
+
+        if (batches.size() == 1)
+            return executeAsync(batches.get(0));
+
+        final List<ResultSetFuture> futures = new ArrayList<>(batches.size());
+        for (final BatchStatement batch: batches) {
+            futures.add(executeAsync(batch));
+        }
+
+        // like executeBatches, the result completes only after every part completed
+        final SettableResultSetFuture result = new SettableResultSetFuture();
+        Futures.addCallback(Futures.successfulAsList(futures), new FutureCallback<List<ResultSet>>() {
+            @Override
+            public void onSuccess(List<ResultSet> resultSets) {
+                for (final ResultSetFuture future: futures) {
+                    try {
+                        Futures.getDone(future);
+                    } catch (ExecutionException e) {
+                        result.fail(e.getCause());
+                        return;
+                    } catch (CancellationException e) {
+                        result.fail(e);
+                        return;
+                    }
+                }
+
+                result.complete(resultSets.get(resultSets.size() - 1));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.fail(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return result;
+    }
+
+    private ResultSet send(Statement statement, Supplier<ResultSet> request) {
+        final ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null && metricsSink == null && slowQueryLog == null)
+            return request.get();
+
+        if (limiter != null)
+            acquire(limiter);
+        final long start = System.nanoTime();
+
+        final ResultSet rs;
+        try {
+            rs = request.get();
+        } catch (RuntimeException e) {
+            completed(statement, limiter, start, null, e);
+            throw e;
+        }
+
+        completed(statement, limiter, start, rs, null);
+        return rs;
+    }
+
+    private ResultSetFuture sendAsync(Statement statement, Supplier<ResultSetFuture> request) {
+        final ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null && metricsSink == null && slowQueryLog == null)
+            return request.get();
+
+        // the caller of an asynchronous request handles failures of the future only
+        if (limiter != null && !tryAcquire(limiter))
+            return failedFuture(new ConcurrencyLimitExceededException(limiter.getLimit()));
+        final long start = System.nanoTime();
+
+        final ResultSetFuture future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            completed(statement, limiter, start, null, e);
+            throw e;
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                completed(statement, limiter, start, rs, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                completed(statement, limiter, start, null, t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+
+    /**
+     * Releases the permit of the limiter, records the metrics and logs a slow sent statement.
+     *
+     * @param rs result, null if the statement failed
+     * @param t failure, null if the statement succeeded
+     */
+    private void completed(Statement statement, ConcurrencyLimiter limiter, long start, ResultSet rs, Throwable t) {
+        final long latency = System.nanoTime() - start;
+
+        if (limiter != null) {
+            if (t == null) {
+                limiter.onSuccess(latency);
+            } else {
+                release(limiter, t);
+            }
+        }
+
+        final MetricsSink sink = metricsSink;
+        if (sink != null)
+            record(sink, statement, latency, rs, t, StatementUtils.getPagingState(statement) != null);
+
+        final SlowQueryLog sql = slowQueryLog;
+        if (sql != null) {
+            try {
+                sql.completed(statement, latency, rs, t);
+            } catch (RuntimeException e) {
+                log.warn("failed to log slow query {}", statement, e);
+            }
+        }
+    }
+
+    private static void record(MetricsSink sink, Statement statement, long latency, ResultSet rs, Throwable t,
+                               boolean pageFetch) {
+        try {
+            final MetricTags tags = new MetricTags(StatementUtils.getTable(statement),
+                    StatementUtils.getType(statement), statement.getConsistencyLevel(),
+                    t == null ? MetricTags.SUCCESS : t.getClass().getSimpleName());
+
+            sink.record(tags, latency, rs == null ? 0 : rs.getAvailableWithoutFetching(), pageFetch);
+        } catch (RuntimeException e) {
+            log.warn("failed to record metrics of {}", statement, e);
+        }
+    }
+
+    /**
+     * Prepared statements are marked once, their bound statements inherit the idempotence when bound.
+     * Batches are left to the driver, it derives their idempotence from the statements of the batch.
+     */
+    private static void markIdempotent(Statement statement) {
+        if (statement instanceof BatchStatement || statement.isIdempotent() != null)
+            return;
+
+        if (statement instanceof BoundStatement) {
+            final PreparedStatement prepared = ((BoundStatement) statement).preparedStatement();
+            final Boolean idempotent = StatementUtils.isIdempotent(prepared.getQueryString());
+            if (idempotent != null) {
+                prepared.setIdempotent(idempotent);
+                statement.setIdempotent(idempotent);
+            }
+        } else if (statement instanceof RegularStatement) {
+            final Boolean idempotent = StatementUtils.isIdempotent(((RegularStatement) statement).getQueryString());
+            if (idempotent != null)
+                statement.setIdempotent(idempotent);
+        }
+    }
+
+    private static void acquire(ConcurrencyLimiter limiter) {
+        if (!tryAcquire(limiter))
+            throw new ConcurrencyLimitExceededException(limiter.getLimit());
+    }
+
+    private static boolean tryAcquire(ConcurrencyLimiter limiter) {
+        if (limiter.tryAcquire())
+            return true;
+
+        log.debug("request rejected, concurrency limit {} exceeded", limiter.getLimit());
+        return false;
+    }
+
+    /**
+     * Timeouts and busy connections mean the cluster or the pool is overloaded, other failures are not counted.
+     */
+    private static void release(ConcurrencyLimiter limiter, Throwable t) {
+        if (t instanceof OperationTimedOutException || t instanceof ReadTimeoutException
+                || t instanceof WriteTimeoutException || t instanceof OverloadedException
+                || t instanceof BusyPoolException || t instanceof BusyConnectionException
+                || t instanceof NoHostAvailableException) {
+            limiter.onDropped();
+        } else {
+            limiter.onIgnore();
+        }
+    }
+
+    private void recordBatches(BatchContext bc) {
+        final List<BatchStatement> batches = bc.getBatchStatements();
+        if (batches.size() > 1) {
+            batchStats.recordSplit();
+            log.debug("batch is split into {} batches", batches.size());
+        }
+
+        for (final BatchStatement batch: batches) {
+            batchStats.recordBatch(batch.size(), bc.getBatchSize(batch));
+        }
+    }
+
+    private List<Object> singleFlightKey(Statement statement) {
+        if (singleFlight == null || isModifyingStatement(statement))
+            return null;
+
+        return SingleFlight.key(statement);
     }
 
     private boolean isModifyingStatement(Statement statement) {
+        if (statement instanceof BoundStatement)
+            return isModifyingQuery(((BoundStatement) statement).preparedStatement().getQueryString());
+
         return statement instanceof Insert || statement instanceof Delete || statement instanceof Update;
     }
 
-    final protected class BatchContext {
-        final private Batch batchStatement;
+    private boolean isModifyingQuery(String query) {
+        final String trimmed = query.trim();
+
+        return startsWithIgnoreCase(trimmed, "INSERT")
+                || startsWithIgnoreCase(trimmed, "UPDATE")
+                || startsWithIgnoreCase(trimmed, "DELETE");
+    }
+
+    private boolean startsWithIgnoreCase(String str, String prefix) {
+        return str.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Statements of a batch. Without limits they form one batch statement. With limits a new batch
+     * statement is started when the current one would exceed them, statements of an unlogged batch
+     * are also grouped by table and partition, so every batch statement writes one partition.
+     */
+    final protected static class BatchContext {
+        // key of all statements when they are not grouped by partition
+        final static private Object SINGLE_GROUP = new Object();
+
         final private BatchAttributes batchAttributes;
+        final private List<BatchStatement> batchStatements = new ArrayList<>();
+        // current batch statement of every table and partition
+        final private Map<Object, BatchStatement> currentBatches = new HashMap<>();
+        // estimated size of the values of every batch statement
+        final private Map<BatchStatement, Long> batchSizes = new IdentityHashMap<>();
         private int nestingLevel;
         private boolean empty = true;
 
         protected BatchContext(BatchAttributes batchAttributes) {
             this.batchAttributes = batchAttributes;
+        }
 
-            batchStatement = batchAttributes.isUnlogged()
-                    ? QueryBuilder.unloggedBatch(new RegularStatement[]{})
-                    : QueryBuilder.batch(new RegularStatement[]{});
+        protected void addStatement(Statement statement) {
+            empty = false;
 
-            if (batchAttributes.getConsistencyLevel() != null)
-                batchStatement.setConsistencyLevel(batchAttributes.getConsistencyLevel());
+            // sizes are estimated only to enforce the limit
+            final long size = batchAttributes.getMaxBytes() > 0 ? estimateSize(statement) : 0;
+            final Object group = group(statement);
 
-            if (batchAttributes.getTimestamp() != null)
-                batchStatement.using(QueryBuilder.timestamp(batchAttributes.getTimestamp()));
+            BatchStatement batch = currentBatches.get(group);
+            if (batch == null || isFull(batch, size)) {
+                batch = newBatchStatement();
+                batchStatements.add(batch);
+                currentBatches.put(group, batch);
+                batchSizes.put(batch, 0L);
+            }
+
+            batch.add(statement);
+            batchSizes.put(batch, batchSizes.get(batch) + size);
         }
 
-        protected void addStatement(Statement statement) {
-            empty = false;
-            batchStatement.add((RegularStatement) statement);
+        protected List<BatchStatement> getBatchStatements() {
+            return batchStatements;
         }
 
-        protected Batch getBatchStatement() {
-            return batchStatement;
+        /**
+         * @return estimated size of the values of the batch statement, 0 if the batch has no byte limit
+         */
+        protected long getBatchSize(BatchStatement batchStatement) {
+            return batchSizes.get(batchStatement);
         }
 
         protected boolean isZeroNestingLevel() {
@@ -216,6 +708,65 @@ public class CassandraTemplateImpl implements CassandraTemplate {
             return empty;
         }
 
+        private boolean isFull(BatchStatement batch, long size) {
+            if (batch.size() == 0)
+                return false;
+
+            final int maxStatements = batchAttributes.getMaxStatements();
+            final long maxBytes = batchAttributes.getMaxBytes();
+
+            return maxStatements > 0 && batch.size() >= maxStatements
+                    || maxBytes > 0 && batchSizes.get(batch) + size > maxBytes;
+        }
+
+        private Object group(Statement statement) {
+            if (!batchAttributes.isUnlogged() || !batchAttributes.isLimited())
+                return SINGLE_GROUP;
+
+            final ByteBuffer routingKey =
+                    statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+            if (routingKey == null)
+                return SINGLE_GROUP;
+
+            // equal key bytes of different tables are different partitions
+            final String table = StatementUtils.getTable(statement);
+
+            return table == null ? statement : Arrays.asList(table, routingKey);
+        }
+
+        private BatchStatement newBatchStatement() {
+            // driver batch accepts bound statements as well as query builder ones
+            final BatchStatement batchStatement = new BatchStatement(batchAttributes.isUnlogged()
+                    ? BatchStatement.Type.UNLOGGED : BatchStatement.Type.LOGGED);
+
+            if (batchAttributes.getConsistencyLevel() != null)
+                batchStatement.setConsistencyLevel(batchAttributes.getConsistencyLevel());
+
+            if (batchAttributes.getTimestamp() != null)
+                batchStatement.setDefaultTimestamp(batchAttributes.getTimestamp());
+
+            return batchStatement;
+        }
+
+        /**
+         * Estimates the size of the values a statement writes: bound values of bound statements,
+         * query length of the others.
+         */
+        private static long estimateSize(Statement statement) {
+            if (statement instanceof BoundStatement) {
+                final BoundStatement bound = (BoundStatement) statement;
+                long size = 0;
+                for (int i = 0; i < bound.preparedStatement().getVariables().size(); i++) {
+                    final ByteBuffer value = bound.getBytesUnsafe(i);
+                    if (value != null)
+                        size += value.remaining();
+                }
+                return size;
+            }
+
+            return statement.toString().length();
+        }
+
     }
 
 }
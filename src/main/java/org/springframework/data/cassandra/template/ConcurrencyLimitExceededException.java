@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import org.springframework.dao.TransientDataAccessResourceException;
+
+/**
+ * Thrown when a request is rejected because the {@link ConcurrencyLimiter} of the template has no free permit.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class ConcurrencyLimitExceededException extends TransientDataAccessResourceException {
+    private static final long serialVersionUID = -3494841344746004648L;
+
+    public ConcurrencyLimitExceededException(int limit) {
+        super("concurrency limit " + limit + " exceeded");
+    }
+
+}
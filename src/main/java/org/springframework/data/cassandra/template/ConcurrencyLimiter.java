@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+/**
+ * Limits the number of requests {@link CassandraTemplateImpl} has in flight. Every acquired permit is released
+ * by exactly one of the outcome methods, the limiter may adjust its limit on them.
+ *
+ * @author Alexandr V Solomatin
+ */
+public interface ConcurrencyLimiter {
+    /**
+     * @return true if the request may be sent, false if it must be rejected
+     */
+    boolean tryAcquire();
+
+    /**
+     * Releases the permit of a completed request.
+     *
+     * @param latencyNanos request latency
+     */
+    void onSuccess(long latencyNanos);
+
+    /**
+     * Releases the permit of a request that failed because of overload: a timeout or a busy pool.
+     */
+    void onDropped();
+
+    /**
+     * Releases the permit of a request whose outcome says nothing about the load, e.g. an invalid query.
+     */
+    void onIgnore();
+
+    /**
+     * @return current limit of requests in flight
+     */
+    int getLimit();
+
+    /**
+     * @return requests in flight
+     */
+    int getInFlight();
+}
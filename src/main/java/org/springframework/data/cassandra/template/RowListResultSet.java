@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Fully fetched {@link ResultSet} over a list of rows. The rows are shared, every copy iterates them independently.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class RowListResultSet implements ResultSet {
+    final private ResultSet source;
+    final private List<Row> rows;
+    private int position;
+
+    RowListResultSet(ResultSet source, List<Row> rows) {
+        this.source = source;
+        this.rows = rows;
+    }
+
+    /**
+     * Reads the fetched rows of the source, it must be fully fetched.
+     */
+    static RowListResultSet of(ResultSet source) {
+        final List<Row> rows = new ArrayList<>(source.getAvailableWithoutFetching());
+        while (source.getAvailableWithoutFetching() > 0) {
+            rows.add(source.one());
+        }
+
+        return new RowListResultSet(source, rows);
+    }
+
+    RowListResultSet copy() {
+        return new RowListResultSet(source, rows);
+    }
+
+    @Override
+    public Row one() {
+        return position < rows.size() ? rows.get(position++) : null;
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        return source.getColumnDefinitions();
+    }
+
+    @Override
+    public boolean wasApplied() {
+        return source.wasApplied();
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return position >= rows.size();
+    }
+
+    @Override
+    public boolean isFullyFetched() {
+        return true;
+    }
+
+    @Override
+    public int getAvailableWithoutFetching() {
+        return rows.size() - position;
+    }
+
+    @Override
+    public ListenableFuture<ResultSet> fetchMoreResults() {
+        return Futures.immediateFuture(this);
+    }
+
+    @Override
+    public List<Row> all() {
+        final List<Row> remaining = new ArrayList<>(rows.subList(position, rows.size()));
+        position = rows.size();
+
+        return remaining;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return !isExhausted();
+            }
+
+            @Override
+            public Row next() {
+                if (isExhausted())
+                    throw new NoSuchElementException();
+
+                return one();
+            }
+        };
+    }
+
+    @Override
+    public ExecutionInfo getExecutionInfo() {
+        return source.getExecutionInfo();
+    }
+
+    @Override
+    public List<ExecutionInfo> getAllExecutionInfo() {
+        return source.getAllExecutionInfo();
+    }
+
+    @Override
+    public String toString() {
+        return "RowListResultSet{rows=" + rows.size() + ", position=" + position + '}';
+    }
+}
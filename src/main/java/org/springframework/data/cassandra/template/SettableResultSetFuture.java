@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.DriverInternalError;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link ResultSetFuture} completed by the template, e.g. the result of one caller of a coalesced query.
+ * Cancelling it doesn't cancel the underlying queries.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class SettableResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+    void complete(ResultSet value) {
+        set(value);
+    }
+
+    void fail(Throwable throwable) {
+        setException(throwable);
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+        try {
+            return Uninterruptibles.getUninterruptibly(this);
+        } catch (ExecutionException e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+        try {
+            return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+        } catch (ExecutionException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Same as the driver futures: the driver exception is copied to get the stack trace of the caller.
+     */
+    private static RuntimeException propagate(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof DriverException)
+            return ((DriverException) cause).copy();
+        if (cause instanceof RuntimeException)
+            return (RuntimeException) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+
+        return new DriverInternalError("Unexpected exception thrown", e);
+    }
+
+}
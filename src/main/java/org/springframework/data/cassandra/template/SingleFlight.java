@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.springframework.data.cassandra.util.StatementUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent reads: while a query is in flight, the same query with the same values
+ * and options waits for its result instead of being sent again. A result that fits in one page is
+ * shared by all callers, each iterates its own copy. A result of several pages can't be shared,
+ * the waiting callers send their own query then.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class SingleFlight {
+    final private ConcurrentMap<List<Object>, ListenableFuture<RowListResultSet>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param statement statement
+     * @return key of identical statements, null if the statement is not an idempotent read
+     * that can be coalesced
+     */
+    static List<Object> key(Statement statement) {
+        if (Boolean.FALSE.equals(statement.isIdempotent()))
+            return null;
+
+        final List<Object> values;
+        final String query;
+        if (statement instanceof BoundStatement) {
+            final BoundStatement bound = (BoundStatement) statement;
+            final int size = bound.preparedStatement().getVariables().size();
+
+            query = bound.preparedStatement().getQueryString();
+            values = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                values.add(bound.getBytesUnsafe(i));
+            }
+        } else if (statement instanceof RegularStatement
+                && !((RegularStatement) statement).hasValues(CodecRegistry.DEFAULT_INSTANCE)) {
+            query = statement.toString();
+            values = null;
+        } else {
+            return null;
+        }
+
+        return Arrays.asList(query, values, statement.getKeyspace(), statement.getConsistencyLevel(),
+                statement.getSerialConsistencyLevel(), statement.getFetchSize(), statement.getReadTimeoutMillis(),
+                StatementUtils.getPagingState(statement));
+    }
+
+    /**
+     * @param key key of the statement, see {@link #key(Statement)}
+     * @param query sends the statement
+     * @return result of the caller
+     */
+    ResultSetFuture execute(List<Object> key, Supplier<ResultSetFuture> query) {
+        final SettableFuture<RowListResultSet> shared = SettableFuture.create();
+        final ListenableFuture<RowListResultSet> leader = inFlight.putIfAbsent(key, shared);
+        final SettableResultSetFuture result = new SettableResultSetFuture();
+
+        if (leader != null) {
+            Futures.addCallback(leader, new FutureCallback<RowListResultSet>() {
+                @Override
+                public void onSuccess(RowListResultSet rs) {
+                    if (rs == null) {
+                        forward(query, result);
+                    } else {
+                        result.complete(rs.copy());
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    result.fail(t);
+                }
+            }, MoreExecutors.directExecutor());
+
+            return result;
+        }
+
+        final ResultSetFuture future;
+        try {
+            future = query.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.setException(e);
+            throw e;
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                // later callers must send a new query
+                inFlight.remove(key, shared);
+
+                if (rs.isFullyFetched()) {
+                    final RowListResultSet rows = RowListResultSet.of(rs);
+                    shared.set(rows);
+                    result.complete(rows.copy());
+                } else {
+                    shared.set(null);
+                    result.complete(rs);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlight.remove(key, shared);
+                shared.setException(t);
+                result.fail(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return result;
+    }
+
+    private static void forward(Supplier<ResultSetFuture> query, SettableResultSetFuture result) {
+        final ResultSetFuture future;
+        try {
+            future = query.get();
+        } catch (RuntimeException e) {
+            result.fail(e);
+            return;
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                result.complete(rs);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.fail(t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+}
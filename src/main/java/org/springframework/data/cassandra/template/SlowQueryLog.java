@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs statements of {@link CassandraTemplateImpl} slower than the threshold at WARN level with their CQL,
+ * bound values, coordinator, tried hosts, speculative executions and pages. A sample of the faster statements
+ * is logged at INFO level. Bound values are redacted to their size unless redactValues is false.
+ * The threshold may be overridden by {@link ExecutionProfile#setSlowQueryThresholdMillis(Long)}.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class SlowQueryLog {
+    final private static Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private long thresholdMillis = 1000;
+    private double sampleRate;
+    private boolean redactValues = true;
+
+    /**
+     * @param thresholdMillis latency above which a statement is logged, 1 second by default
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        Assert.isTrue(thresholdMillis >= 0, "thresholdMillis must not be negative");
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * @param sampleRate share of the statements under the threshold to log, 0 by default
+     */
+    public void setSampleRate(double sampleRate) {
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "sampleRate must be between 0 and 1");
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @param redactValues false to log bound values as they are, true by default
+     */
+    public void setRedactValues(boolean redactValues) {
+        this.redactValues = redactValues;
+    }
+
+    /**
+     * @param statement executed statement
+     * @param latencyNanos latency
+     * @param rs result, null if the statement failed
+     * @param t failure, null if the statement succeeded
+     */
+    void completed(Statement statement, long latencyNanos, ResultSet rs, Throwable t) {
+        final long latencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+
+        if (latencyMillis >= getThresholdMillis(statement)) {
+            if (log.isWarnEnabled())
+                log.warn("slow query {}", describe(statement, latencyMillis, rs, t));
+        } else if (sampleRate > 0 && log.isInfoEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.info("sampled query {}", describe(statement, latencyMillis, rs, t));
+        }
+    }
+
+    long getThresholdMillis(Statement statement) {
+        final ExecutionProfile profile = ExecutionProfile.getAppliedProfile(statement);
+
+        return profile == null ? thresholdMillis : profile.getSlowQueryThresholdMillis();
+    }
+
+    String describe(Statement statement, long latencyMillis, ResultSet rs, Throwable t) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(latencyMillis).append(" ms: ").append(getQuery(statement));
+        appendValues(sb, statement);
+        sb.append(" consistency=").append(statement.getConsistencyLevel());
+
+        if (rs != null) {
+            final ExecutionInfo info = rs.getExecutionInfo();
+            sb.append(" coordinator=").append(info.getQueriedHost());
+            sb.append(" triedHosts=").append(info.getTriedHosts().size());
+            sb.append(" speculativeExecutions=").append(info.getSpeculativeExecutions());
+            sb.append(" pages=").append(rs.getAllExecutionInfo().size());
+            sb.append(" rows=").append(rs.getAvailableWithoutFetching());
+        }
+
+        if (t != null)
+            sb.append(" failed: ").append(t);
+
+        return sb.toString();
+    }
+
+    private static String getQuery(Statement statement) {
+        if (statement instanceof BoundStatement)
+            return ((BoundStatement) statement).preparedStatement().getQueryString();
+
+        if (statement instanceof BatchStatement)
+            return "batch of " + ((BatchStatement) statement).size() + " statements";
+
+        if (statement instanceof RegularStatement)
+            return ((RegularStatement) statement).getQueryString();
+
+        return String.valueOf(statement);
+    }
+
+    private void appendValues(StringBuilder sb, Statement statement) {
+        if (statement instanceof BoundStatement) {
+            final BoundStatement bound = (BoundStatement) statement;
+            final ColumnDefinitions variables = bound.preparedStatement().getVariables();
+
+            sb.append(" values=[");
+            for (int i = 0; i < variables.size(); i++) {
+                if (i > 0)
+                    sb.append(", ");
+
+                sb.append(variables.getName(i)).append('=');
+                final ByteBuffer bytes = bound.getBytesUnsafe(i);
+                if (bytes == null) {
+                    sb.append("null");
+                } else if (redactValues) {
+                    sb.append('<').append(bytes.remaining()).append(" bytes>");
+                } else {
+                    sb.append(bound.getObject(i));
+                }
+            }
+            sb.append(']');
+        } else if (statement instanceof SimpleStatement && ((SimpleStatement) statement).valuesCount() > 0) {
+            final SimpleStatement simple = (SimpleStatement) statement;
+
+            sb.append(" values=[");
+            for (int i = 0; i < simple.valuesCount(); i++) {
+                if (i > 0)
+                    sb.append(", ");
+
+                sb.append(redactValues ? "<redacted>" : String.valueOf(simple.getObject(i)));
+            }
+            sb.append(']');
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SlowQueryLog{");
+        sb.append("thresholdMillis=").append(thresholdMillis);
+        sb.append(", sampleRate=").append(sampleRate);
+        sb.append(", redactValues=").append(redactValues);
+        sb.append('}');
+        return sb.toString();
+    }
+}
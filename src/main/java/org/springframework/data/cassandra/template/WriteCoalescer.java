@@ -0,0 +1,339 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.cassandra.core.CassandraExceptionTranslator;
+import org.springframework.data.cassandra.util.StatementUtils;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind micro-batching of independent writes. Statements are buffered for at most maxDelayMillis
+ * or until maxStatements are pending, then grouped by table, partition and consistency level and every group is
+ * sent as one unlogged batch. The future of a write completes when the batch of its partition is written.
+ * A batch has one write timestamp, so a second write of a row already in the batch starts the next batch
+ * of the group, which is sent once the previous one completed. Writes whose row can't be determined
+ * are sent alone in the same order.
+ *
+ * @author Alexandr V Solomatin
+ */
+public class WriteCoalescer implements InitializingBean, DisposableBean {
+    final private static Logger log = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    final static private PersistenceExceptionTranslator EXCEPTION_TRANSLATOR = new CassandraExceptionTranslator();
+
+    private CassandraTemplate template;
+    private long maxDelayMillis = 5;
+    private int maxStatements = 100;
+    private ScheduledExecutorService scheduler;
+    // primary key column names by "keyspace.table", empty if the table is unknown
+    final private ConcurrentMap<String, List<String>> primaryKeys = new ConcurrentHashMap<>();
+    // guarded by this
+    private List<PendingWrite> pending = new ArrayList<>();
+    // guarded by this
+    private boolean closed;
+
+    public void setTemplate(CassandraTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * @param maxDelayMillis maximum time a write waits in the buffer
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        Assert.isTrue(maxDelayMillis > 0, "maxDelayMillis must be positive");
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param maxStatements number of pending writes that triggers a flush
+     */
+    public void setMaxStatements(int maxStatements) {
+        Assert.isTrue(maxStatements > 0, "maxStatements must be positive");
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Assert.notNull(template, "template is required");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cassandra-write-coalescer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Sends the pending writes and stops the timer, later writes fail.
+     */
+    @Override
+    public void destroy() {
+        log.debug("shutting down write coalescer");
+
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Buffers a write.
+     *
+     * @param statement modifying statement
+     * @return future completed when the statement is written, failed with IllegalStateException after destroy
+     */
+    public CompletableFuture<Void> write(Statement statement) {
+        Assert.notNull(statement, "statement");
+
+        final PendingWrite write = new PendingWrite(statement);
+        final List<PendingWrite> full;
+
+        synchronized (this) {
+            Assert.state(scheduler != null, "write coalescer is not initialized");
+
+            // a buffered write would never be flushed
+            if (closed) {
+                write.future.completeExceptionally(new IllegalStateException("write coalescer is destroyed"));
+                return write.future;
+            }
+
+            pending.add(write);
+            if (pending.size() == 1 && maxStatements > 1)
+                scheduler.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+
+            full = pending.size() >= maxStatements ? drain() : null;
+        }
+
+        if (full != null)
+            send(full);
+
+        return write.future;
+    }
+
+    /**
+     * Sends the pending writes now.
+     */
+    public void flush() {
+        final List<PendingWrite> writes;
+        synchronized (this) {
+            writes = drain();
+        }
+
+        if (!writes.isEmpty())
+            send(writes);
+    }
+
+    private List<PendingWrite> drain() {
+        final List<PendingWrite> writes = pending;
+        pending = new ArrayList<>();
+
+        return writes;
+    }
+
+    private void send(List<PendingWrite> writes) {
+        final Map<List<Object>, List<List<PendingWrite>>> groups = new LinkedHashMap<>();
+        final Map<List<Object>, Set<List<ByteBuffer>>> groupRows = new HashMap<>();
+        int batches = 0;
+
+        for (final PendingWrite write: writes) {
+            final String table = StatementUtils.getTable(write.statement);
+            final ByteBuffer routingKey =
+                    write.statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+
+            // without a table or a routing key the statement is sent alone
+            final List<Object> key = table == null || routingKey == null ? Collections.singletonList(write)
+                    : Arrays.asList(table, routingKey, write.statement.getConsistencyLevel());
+            final List<List<PendingWrite>> group = groups.computeIfAbsent(key, k -> new ArrayList<>());
+            final Set<List<ByteBuffer>> rows = groupRows.computeIfAbsent(key, k -> new HashSet<>());
+
+            // a row is written once per batch, an unknown row is written alone
+            final List<ByteBuffer> row = table == null ? null : getRow(table, write.statement);
+            if (group.isEmpty() || row == null || rows.contains(row) || rows.contains(null)) {
+                group.add(new ArrayList<>());
+                rows.clear();
+                batches++;
+            }
+
+            group.get(group.size() - 1).add(write);
+            rows.add(row);
+        }
+
+        log.trace("flushing {} writes in {} batches", writes.size(), batches);
+
+        for (final List<List<PendingWrite>> group: groups.values()) {
+            sendInOrder(group.iterator());
+        }
+    }
+
+    /**
+     * Batches of a group are sent one after another, so a later write of a row gets a later timestamp.
+     */
+    private void sendInOrder(Iterator<List<PendingWrite>> batches) {
+        if (!batches.hasNext())
+            return;
+
+        final List<PendingWrite> batch = batches.next();
+        send(batch, batch.size() == 1 ? batch.get(0).statement : batch(batch)).whenComplete((v, t) ->
+                sendInOrder(batches));
+    }
+
+    private CompletableFuture<Void> send(List<PendingWrite> group, Statement statement) {
+        final CompletableFuture<Void> sent = new CompletableFuture<>();
+
+        final ResultSetFuture future;
+        try {
+            future = template.executeAsync(statement);
+        } catch (RuntimeException e) {
+            fail(group, e);
+            sent.complete(null);
+            return sent;
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet rs) {
+                for (final PendingWrite write: group) {
+                    write.future.complete(null);
+                }
+                sent.complete(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                fail(group, t);
+                sent.complete(null);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return sent;
+    }
+
+    /**
+     * @return values of the primary key columns of a bound statement, null if they are unknown
+     */
+    private List<ByteBuffer> getRow(String table, Statement statement) {
+        if (!(statement instanceof BoundStatement))
+            return null;
+
+        final List<String> columns = primaryKeys.computeIfAbsent(table, this::getPrimaryKey);
+        if (columns.isEmpty())
+            return null;
+
+        final BoundStatement bound = (BoundStatement) statement;
+        final List<ByteBuffer> row = new ArrayList<>(columns.size());
+        for (final String column: columns) {
+            if (!bound.preparedStatement().getVariables().contains(column))
+                return null;
+
+            row.add(bound.getBytesUnsafe(column));
+        }
+
+        return row;
+    }
+
+    private List<String> getPrimaryKey(String table) {
+        final int dot = table.indexOf('.');
+        final String keyspace = dot < 0 ? template.getLoggedKeyspace() : table.substring(0, dot);
+        final Metadata metadata = template.getClusterMetadata();
+        final KeyspaceMetadata keyspaceMetadata =
+                keyspace == null || metadata == null ? null : metadata.getKeyspace(keyspace);
+        final TableMetadata tableMetadata =
+                keyspaceMetadata == null ? null : keyspaceMetadata.getTable(table.substring(dot + 1));
+
+        if (tableMetadata == null)
+            return Collections.emptyList();
+
+        final List<String> columns = new ArrayList<>();
+        for (final ColumnMetadata column: tableMetadata.getPrimaryKey()) {
+            columns.add(column.getName());
+        }
+
+        return columns;
+    }
+
+    private static BatchStatement batch(List<PendingWrite> group) {
+        final BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+        for (final PendingWrite write: group) {
+            batch.add(write.statement);
+        }
+
+        final Statement first = group.get(0).statement;
+        if (first.getConsistencyLevel() != null)
+            batch.setConsistencyLevel(first.getConsistencyLevel());
+
+        return batch;
+    }
+
+    private static void fail(List<PendingWrite> group, Throwable t) {
+        Throwable translated = t;
+        if (t instanceof RuntimeException) {
+            final RuntimeException dataAccessException =
+                    EXCEPTION_TRANSLATOR.translateExceptionIfPossible((RuntimeException) t);
+            if (dataAccessException != null)
+                translated = dataAccessException;
+        }
+
+        for (final PendingWrite write: group) {
+            write.future.completeExceptionally(translated);
+        }
+    }
+
+    final private static class PendingWrite {
+        final private Statement statement;
+        final private CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(Statement statement) {
+            this.statement = statement;
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.util;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Helpers for running many asynchronous requests with a bounded number in flight.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class ConcurrencyUtils {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ConcurrencyUtils() {}
+
+    /**
+     * Applies the asynchronous function to every input keeping at most maxInFlight futures incomplete.
+     * The next input is taken only when a slot frees up. Results are returned in input order.
+     * The first failure completes the result exceptionally and stops launching new requests.
+     *
+     * @param inputs inputs, iterated lazily
+     * @param maxInFlight maximum number of incomplete futures
+     * @param function starts asynchronous request for an input
+     * @return future of results in input order
+     */
+    public static <I, R> CompletableFuture<List<R>> mapAsync(Iterable<? extends I> inputs, int maxInFlight,
+                                                             Function<? super I, CompletableFuture<R>> function) {
+        Assert.notNull(inputs, "inputs");
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be positive");
+
+        final BoundedLauncher<I, R> launcher = new BoundedLauncher<>(inputs.iterator(), maxInFlight, function);
+        launcher.drain();
+
+        return launcher.result;
+    }
+
+    final private static class BoundedLauncher<I, R> {
+        final private Iterator<? extends I> iterator;
+        final private int maxInFlight;
+        final private Function<? super I, CompletableFuture<R>> function;
+        final private CompletableFuture<List<R>> result = new CompletableFuture<>();
+        final private List<R> results = new ArrayList<>();
+        // guards against recursion when futures are already completed
+        final private AtomicInteger wip = new AtomicInteger();
+        private int inFlight;
+        private boolean failed;
+
+        BoundedLauncher(Iterator<? extends I> iterator, int maxInFlight,
+                        Function<? super I, CompletableFuture<R>> function) {
+            this.iterator = iterator;
+            this.maxInFlight = maxInFlight;
+            this.function = function;
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            do {
+                launchAvailable();
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void launchAvailable() {
+            while (true) {
+                final int index;
+                final I input;
+
+                synchronized (this) {
+                    if (failed)
+                        return;
+
+                    if (!iterator.hasNext()) {
+                        if (inFlight == 0)
+                            result.complete(results);
+                        return;
+                    }
+
+                    if (inFlight >= maxInFlight)
+                        return;
+
+                    input = iterator.next();
+                    index = results.size();
+                    results.add(null);
+                    inFlight++;
+                }
+
+                CompletableFuture<R> future;
+                try {
+                    future = function.apply(input);
+                } catch (RuntimeException e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+
+                future.whenComplete((r, t) -> onComplete(index, r, t));
+            }
+        }
+
+        private void onComplete(int index, R r, Throwable t) {
+            synchronized (this) {
+                inFlight--;
+
+                if (t == null) {
+                    results.set(index, r);
+                } else {
+                    failed = true;
+                }
+            }
+
+            if (t != null) {
+                result.completeExceptionally(t);
+            } else {
+                drain();
+            }
+        }
+    }
+
+}
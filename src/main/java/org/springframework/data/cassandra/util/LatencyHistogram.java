@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.util;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in microseconds. Every power of two is split into 16
+ * sub-buckets, so a percentile is reported with at most 1/16 relative error. Latencies above about 19 hours
+ * are recorded as the maximum value.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class LatencyHistogram {
+    final static private int SUB_BUCKET_BITS = 4;
+    final static private int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    final static private long MAX_VALUE = (1L << 36) - 1;
+
+    final private AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    final private LongAdder count = new LongAdder();
+    final private LongAdder sum = new LongAdder();
+
+    /**
+     * @param latencyNanos latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        final long micros = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        sum.add(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMeanNanos() {
+        final long n = count.sum();
+
+        return n == 0 ? 0 : TimeUnit.MICROSECONDS.toNanos(sum.sum() / n);
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return highest latency of the bucket holding the percentile in nanoseconds, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        Assert.isTrue(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0)
+            return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return TimeUnit.MICROSECONDS.toNanos(highestValue(i));
+        }
+
+        return TimeUnit.MICROSECONDS.toNanos(MAX_VALUE);
+    }
+
+    /**
+     * @return highest recorded latency in nanoseconds with the precision of the buckets
+     */
+    public long getMaxNanos() {
+        for (int i = counts.length() - 1; i >= 0; i--) {
+            if (counts.get(i) > 0)
+                return TimeUnit.MICROSECONDS.toNanos(highestValue(i));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Values below 2 * SUB_BUCKETS have a bucket each, a larger value is shifted right
+     * until it has SUB_BUCKET_BITS + 1 bits.
+     */
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (int) (SUB_BUCKETS * shift + (value >>> shift));
+    }
+
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("LatencyHistogram{");
+        sb.append("count=").append(count);
+        sb.append(", p50=").append(getValueAtPercentile(50));
+        sb.append(", p99=").append(getValueAtPercentile(99));
+        sb.append(", max=").append(getMaxNanos());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.util;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Statement;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for inspecting statements before they are executed.
+ *
+ * @author Alexandr V Solomatin
+ */
+final public class StatementUtils {
+    // the driver doesn't expose the paging state of a statement
+    final static private Method GET_PAGING_STATE = pagingStateGetter();
+    final static private Pattern TABLE = Pattern.compile(
+            "\\b(?:FROM|INTO|UPDATE)\\s+(\"?\\w+\"?(?:\\s*\\.\\s*\"?\\w+\"?)?)", Pattern.CASE_INSENSITIVE);
+    // lightweight transactions: IF NOT EXISTS, IF EXISTS and IF conditions
+    final static private Pattern CONDITION = Pattern.compile("\\bIF\\b", Pattern.CASE_INSENSITIVE);
+    // counter increments and collection appends or prepends: c = c + ?, l = [1] + l
+    final static private Pattern INCREMENT = Pattern.compile("=\\s*[\\w\"?:\\[\\]{}']+\\s*[+-]");
+    final static private Pattern NON_IDEMPOTENT_FUNCTION = Pattern.compile(
+            "\\b(?:now|uuid|currentTimeUUID|currentTimestamp|currentDate|currentTime)\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StatementUtils() {}
+
+    /**
+     * @param statement statement
+     * @return "keyspace.table" or "table" of a simple, built or bound statement, null for batches
+     * and statements without a table
+     */
+    public static String getTable(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            final ColumnDefinitions variables = ((BoundStatement) statement).preparedStatement().getVariables();
+            if (variables.size() > 0)
+                return variables.getKeyspace(0) + '.' + variables.getTable(0);
+
+            return getTable(((BoundStatement) statement).preparedStatement().getQueryString(),
+                    statement.getKeyspace());
+        }
+
+        if (statement instanceof RegularStatement)
+            return getTable(((RegularStatement) statement).getQueryString(), statement.getKeyspace());
+
+        return null;
+    }
+
+    /**
+     * @param statement statement
+     * @return type of the statement by its first keyword
+     */
+    public static StatementType getType(Statement statement) {
+        if (statement instanceof BatchStatement)
+            return StatementType.BATCH;
+
+        if (statement instanceof BoundStatement)
+            return getType(((BoundStatement) statement).preparedStatement().getQueryString());
+
+        if (statement instanceof RegularStatement)
+            return getType(((RegularStatement) statement).getQueryString());
+
+        return StatementType.OTHER;
+    }
+
+    /**
+     * @param statement statement
+     * @return paging state set on the statement, null for the first page
+     */
+    public static ByteBuffer getPagingState(Statement statement) {
+        return (ByteBuffer) ReflectionUtils.invokeMethod(GET_PAGING_STATE, statement);
+    }
+
+    private static StatementType getType(String query) {
+        switch (keyword(query)) {
+            case "SELECT":
+                return StatementType.SELECT;
+            case "INSERT":
+                return StatementType.INSERT;
+            case "UPDATE":
+                return StatementType.UPDATE;
+            case "DELETE":
+                return StatementType.DELETE;
+            case "BEGIN":
+                return StatementType.BATCH;
+            default:
+                return StatementType.OTHER;
+        }
+    }
+
+    private static String getTable(String query, String keyspace) {
+        final Matcher matcher = TABLE.matcher(query);
+        if (!matcher.find())
+            return null;
+
+        final String table = matcher.group(1).replace("\"", "").replace(" ", "");
+        if (keyspace == null || table.indexOf('.') >= 0)
+            return table;
+
+        return keyspace + '.' + table;
+    }
+
+    /**
+     * Selects are idempotent. Inserts, updates and deletes are idempotent unless they are lightweight transactions,
+     * increment counters, append to lists or call functions like now() and uuid().
+     *
+     * @param query CQL query
+     * @return idempotence of the query, null for other statements, e.g. batches or schema changes
+     */
+    public static Boolean isIdempotent(String query) {
+        switch (keyword(query)) {
+            case "SELECT":
+                return true;
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+                return !CONDITION.matcher(query).find() && !INCREMENT.matcher(query).find()
+                        && !NON_IDEMPOTENT_FUNCTION.matcher(query).find();
+            default:
+                return null;
+        }
+    }
+
+    private static String keyword(String query) {
+        final String trimmed = query.trim();
+        final int end = trimmed.indexOf(' ');
+
+        return (end < 0 ? trimmed : trimmed.substring(0, end)).toUpperCase(Locale.ROOT);
+    }
+
+    private static Method pagingStateGetter() {
+        final Method method = ReflectionUtils.findMethod(Statement.class, "getPagingState");
+        ReflectionUtils.makeAccessible(method);
+
+        return method;
+    }
+
+}
@@ -29,11 +29,14 @@ import org.springframework.data.cassandra.entity.CommentPk;
 import org.springframework.data.cassandra.entity.Post;
 import org.springframework.data.cassandra.mapping.CassandraPersistentEntity;
 import org.springframework.data.cassandra.mapping.CassandraPersistentProperty;
+import org.springframework.data.cassandra.mapping.NullWriteMode;
 import org.springframework.data.mapping.MappingException;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.easymock.EasyMock.*;
@@ -100,6 +103,76 @@ public class TestMappingCassandraEntityConverter extends EasyMockSupport {
         );
     }
 
+    @Test
+    public void getColumnValues() {
+        Map<String, Object> values = converter.getColumnValues(makePost());
+
+        assertEquals(
+                Arrays.asList("body_text", "crypto", "crypto_string", "crypto_value", "id", "title", "type"),
+                new ArrayList<>(values.keySet())
+        );
+        assertEquals("some body", values.get("body_text"));
+        assertNull(values.get("crypto_value"));
+        assertEquals(postId, values.get("id"));
+        assertEquals("TYPE2", values.get("type"));
+
+        Map<String, Object> commentValues = converter.getColumnValues(makeComment());
+
+        assertEquals(
+                Arrays.asList("body_text", "field_double", "field_timestamp", "field_blob", "field_inet", "field_map",
+                        "field_set", "fielt_list", "comment_id", "post_id"),
+                new ArrayList<>(commentValues.keySet())
+        );
+        assertEquals(123.12D, commentValues.get("field_double"));
+        assertEquals(commentId, commentValues.get("comment_id"));
+    }
+
+    @Test
+    public void omitNullColumns() {
+        converter.setNullWriteMode(NullWriteMode.OMIT);
+
+        Map<String, Object> values = converter.getColumnValues(makePost());
+        assertFalse(values.containsKey("crypto_value"));
+        assertEquals("some body", values.get("body_text"));
+
+        Insert insert = QueryBuilder.insertInto("posts");
+        converter.writeInsert(makePost(), insert);
+        assertFalse(insert.toString().contains("crypto_value"));
+
+        // unset keeps the columns to be bound as unset
+        converter.setNullWriteMode(NullWriteMode.UNSET);
+        assertTrue(converter.getColumnValues(makePost()).containsKey("crypto_value"));
+    }
+
+    @Test
+    public void plainColumnValuesAreNotEncrypted() {
+        // no encryptor is expected
+        replayAll();
+
+        Map<String, Object> values = converter.getPlainColumnValues(makeCryptoPost(Boolean.TRUE));
+
+        assertEquals(Arrays.asList("body_text", "crypto", "id", "title", "type"), new ArrayList<>(values.keySet()));
+        assertEquals(Boolean.TRUE, values.get("crypto"));
+        verifyAll();
+    }
+
+    @Test
+    public void getIdColumnValues() {
+        Map<String, Object> values = converter.getIdColumnValues(Comment.class, commentPk);
+
+        assertEquals(Arrays.asList("comment_id", "post_id"), new ArrayList<>(values.keySet()));
+        assertEquals(Arrays.asList(commentId, postId), new ArrayList<>(values.values()));
+
+        values = converter.getIdColumnValues(Comment.class, new CommentPk(postId, null));
+
+        assertEquals(Arrays.asList("post_id"), new ArrayList<>(values.keySet()));
+
+        values = converter.getIdColumnValues(Post.class, postId);
+
+        assertEquals(Arrays.asList("id"), new ArrayList<>(values.keySet()));
+        assertEquals(postId, values.get("id"));
+    }
+
     @Test
     public void writeCryptoDisabledInsert() {
         Insert query1 = QueryBuilder.insertInto("c");
@@ -272,6 +345,20 @@ public class TestMappingCassandraEntityConverter extends EasyMockSupport {
         );
     }
 
+    @Test
+    public void getProjectionColumns() {
+        // crypto state column is selected with the encrypted column
+        assertEquals(Arrays.asList("crypto_value", "crypto", "title"),
+                converter.getProjectionColumns(Post.class, PostSummary.class));
+
+        // nested projection of the embedded entity
+        assertEquals(Arrays.asList("body_text", "field_double"),
+                converter.getProjectionColumns(Comment.class, CommentText.class));
+
+        // supertype of the entity needs everything
+        assertEquals(10, converter.getProjectionColumns(Comment.class, Object.class).size());
+    }
+
     @Test
     public void getColumn() {
         CassandraPersistentEntity persistentEntityPost = converter.getMappingContext().getPersistentEntity(Post.class);
@@ -344,4 +431,34 @@ public class TestMappingCassandraEntityConverter extends EasyMockSupport {
         return post;
     }
 
+    public interface PostSummary {
+        String getTitle();
+        Long getCryptoValue();
+    }
+
+    public static class CommentText {
+        private final String text;
+        private EmbeddedDouble commentEmbedded;
+
+        public CommentText(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public EmbeddedDouble getCommentEmbedded() {
+            return commentEmbedded;
+        }
+
+        public void setCommentEmbedded(EmbeddedDouble commentEmbedded) {
+            this.commentEmbedded = commentEmbedded;
+        }
+    }
+
+    public interface EmbeddedDouble {
+        Double getFieldDouble();
+    }
+
 }
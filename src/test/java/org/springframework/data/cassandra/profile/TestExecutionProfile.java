@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.NoSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import org.aopalliance.intercept.MethodInvocation;
+import org.easymock.EasyMockSupport;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestExecutionProfile extends EasyMockSupport {
+
+    @Test
+    public void apply() {
+        ExecutionProfile profile = new ExecutionProfile();
+        profile.setName("fast");
+        profile.setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+        profile.setReadTimeoutMillis(100);
+        profile.setFetchSize(50);
+        profile.setIdempotent(true);
+
+        Statement statement = new SimpleStatement("select * from t");
+        statement.setSerialConsistencyLevel(ConsistencyLevel.LOCAL_SERIAL);
+        profile.apply(statement);
+
+        assertEquals(ConsistencyLevel.LOCAL_ONE, statement.getConsistencyLevel());
+        // not set in the profile, left as is
+        assertEquals(ConsistencyLevel.LOCAL_SERIAL, statement.getSerialConsistencyLevel());
+        assertEquals(100, statement.getReadTimeoutMillis());
+        assertEquals(50, statement.getFetchSize());
+        assertTrue(statement.isIdempotent());
+    }
+
+    @Test
+    public void speculativeExecutionRouting() {
+        SpeculativeExecutionPolicy.SpeculativeExecutionPlan plan =
+                createMock(SpeculativeExecutionPolicy.SpeculativeExecutionPlan.class);
+        SpeculativeExecutionPolicy profilePolicy = createMock(SpeculativeExecutionPolicy.class);
+
+        ExecutionProfile profile = new ExecutionProfile();
+        profile.setName("hedged");
+        profile.setSpeculativeExecutionPolicy(profilePolicy);
+
+        ProfileSpeculativeExecutionPolicy router = new ProfileSpeculativeExecutionPolicy(
+                NoSpeculativeExecutionPolicy.INSTANCE, Arrays.asList(profile, new ExecutionProfile()));
+
+        Statement profiled = new SimpleStatement("select * from t");
+        profile.apply(profiled);
+
+        expect(profilePolicy.newPlan("ks", profiled)).andReturn(plan);
+        replayAll();
+
+        assertSame(plan, router.newPlan("ks", profiled));
+        assertEquals(-1, router.newPlan("ks", new SimpleStatement("select * from t")).nextExecution(null));
+
+        verifyAll();
+    }
+
+    @Test
+    public void methodInterceptor() throws Throwable {
+        MethodInvocation invocation = createMock(MethodInvocation.class);
+        expect(invocation.getMethod()).andReturn(Annotated.class.getMethod("read")).anyTimes();
+        expect(invocation.proceed()).andAnswer(ExecutionProfileContext::get);
+        replayAll();
+
+        ExecutionProfileMethodInterceptor interceptor = new ExecutionProfileMethodInterceptor(Annotated.class);
+
+        assertEquals("fast", interceptor.invoke(invocation));
+        assertNull(ExecutionProfileContext.get());
+
+        verifyAll();
+    }
+
+    public static class Annotated {
+        @UseExecutionProfile("fast")
+        public String read() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.profile;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestTablePercentileSpeculativeExecutionPolicy {
+
+    @Test
+    public void delayIsPercentileOfTable() throws Exception {
+        Cluster cluster = createNiceMock(Cluster.class);
+        replay(cluster);
+
+        TablePercentileSpeculativeExecutionPolicy policy = new TablePercentileSpeculativeExecutionPolicy(90, 2);
+        policy.setMinRecordedValues(10);
+        policy.setIntervalMillis(50);
+        policy.init(cluster);
+
+        Statement statement = new SimpleStatement("SELECT * FROM ks.t WHERE id = ?");
+        // no latencies yet, no speculative execution
+        assertEquals(-1, policy.newPlan("ks", statement).nextExecution(null));
+
+        for (int i = 1; i <= 10; i++) {
+            policy.update(null, statement, null, TimeUnit.MILLISECONDS.toNanos(i * 10));
+        }
+        policy.update(null, statement, new OperationTimedOutException(null), TimeUnit.SECONDS.toNanos(10));
+
+        // the interval is completed by the first latency after it
+        Thread.sleep(60);
+        policy.update(null, statement, null, TimeUnit.MILLISECONDS.toNanos(10));
+
+        long delay = policy.getDelayMillis("ks.t");
+        assertTrue("delay " + delay, delay >= 85 && delay <= 95);
+
+        SpeculativeExecutionPolicy.SpeculativeExecutionPlan plan = policy.newPlan("ks", statement);
+        assertEquals(delay, plan.nextExecution(null));
+        assertEquals(delay, plan.nextExecution(null));
+        assertEquals(-1, plan.nextExecution(null));
+
+        // other tables have their own latencies
+        assertEquals(-1, policy.newPlan("ks", new SimpleStatement("SELECT * FROM ks.u")).nextExecution(null));
+    }
+
+    @Test
+    public void writesAreNotHedged() throws Exception {
+        Cluster cluster = createNiceMock(Cluster.class);
+        replay(cluster);
+
+        TablePercentileSpeculativeExecutionPolicy policy = new TablePercentileSpeculativeExecutionPolicy(90, 1);
+        policy.setMinRecordedValues(1);
+        policy.setIntervalMillis(1);
+        policy.init(cluster);
+
+        Statement select = new SimpleStatement("SELECT * FROM ks.t WHERE id = ?");
+        policy.update(null, select, null, TimeUnit.MILLISECONDS.toNanos(10));
+        Thread.sleep(5);
+        policy.update(null, select, null, TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(policy.newPlan("ks", select).nextExecution(null) >= 0);
+
+        Statement insert = new SimpleStatement("INSERT INTO ks.t (id, v) VALUES (?, ?)").setIdempotent(true);
+        assertEquals(-1, policy.newPlan("ks", insert).nextExecution(null));
+    }
+
+}
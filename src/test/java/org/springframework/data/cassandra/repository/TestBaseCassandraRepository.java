@@ -0,0 +1,1002 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMockSupport;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.cassandra.convert.MappingCassandraEntityConverter;
+import org.springframework.data.cassandra.entity.Comment;
+import org.springframework.data.cassandra.entity.CommentPk;
+import org.springframework.data.cassandra.entity.Post;
+import org.springframework.data.cassandra.entity.Post.PostType;
+import org.springframework.data.cassandra.mapping.NullWriteMode;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+import org.springframework.data.cassandra.profile.ExecutionProfileContext;
+import org.springframework.data.cassandra.template.BatchAttributes;
+import org.springframework.data.cassandra.template.CassandraTemplate;
+import org.springframework.data.cassandra.template.CassandraTemplateImpl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestBaseCassandraRepository extends EasyMockSupport {
+    final private UUID postId = UUID.fromString("b90fcb58-4e53-4908-9e80-4683049362dd");
+
+    private CassandraTemplate template;
+    private PostRepository repository;
+
+    @Before
+    public void setUp() {
+        template = createMock(CassandraTemplate.class);
+
+        repository = new PostRepository();
+        repository.setTemplate(template);
+        repository.setConverter(new MappingCassandraEntityConverter());
+    }
+
+    @Test
+    public void existsByIdSelectsKeyWithLimit() {
+        Capture<RegularStatement> prepared = new Capture<>();
+        BoundStatement bound = createMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound));
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound).times(2);
+        expect(template.execute(bound)).andReturn(rs).times(2);
+        expect(rs.isExhausted()).andReturn(false).andReturn(true);
+        replayAll();
+
+        assertTrue(repository.existsById(postId));
+        // the prepared statement is reused
+        assertFalse(repository.existsById(postId));
+
+        assertEquals("SELECT id FROM post WHERE id=? LIMIT 1;", prepared.getValue().toString());
+        verifyAll();
+    }
+
+    @Test
+    public void compositeIdIsBoundToCachedStatements() {
+        UUID commentId = UUID.fromString("0d9d6b3e-2c4e-4d4f-9c5c-0f1d7a3c5e61");
+        UUID otherCommentId = UUID.fromString("6c2f3a7e-8b1d-4e2a-a1f4-3e5b9c7d2a10");
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        List<Object> insertValues = new ArrayList<>();
+        List<Object> selectValues = new ArrayList<>();
+        BoundStatement insert = createMock(BoundStatement.class);
+        BoundStatement select = createMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+
+        expect(template.prepare(capture(prepared)))
+                .andReturn(preparedStatement(insert, insertValues))
+                .andReturn(preparedStatement(select, selectValues));
+        expect(insert.setConsistencyLevel(anyObject())).andReturn(insert).times(2);
+        expect(template.execute(insert)).andReturn(null).times(2);
+        expect(select.setConsistencyLevel(anyObject())).andReturn(select).times(2);
+        expect(template.execute(select)).andReturn(rs).times(2);
+        expect(rs.isExhausted()).andReturn(true).times(2);
+        replayAll();
+
+        CommentRepository comments = new CommentRepository();
+        comments.setTemplate(template);
+        comments.setConverter(new MappingCassandraEntityConverter());
+
+        comments.save(comment(new CommentPk(postId, commentId)));
+        comments.save(comment(new CommentPk(postId, otherCommentId)));
+
+        assertFalse(comments.findById(new CommentPk(postId, commentId)).isPresent());
+        assertFalse(comments.findById(new CommentPk(postId, otherCommentId)).isPresent());
+
+        // one statement per operation, prepared on first use
+        assertEquals(2, prepared.getValues().size());
+        assertTrue(prepared.getValues().get(0).toString().startsWith("INSERT INTO comments"));
+        assertTrue(prepared.getValues().get(1).toString().endsWith(" FROM comments WHERE comment_id=? AND post_id=?;"));
+
+        assertTrue(insertValues.containsAll(Arrays.asList(commentId, otherCommentId, postId, "text")));
+        assertEquals(Arrays.asList(commentId, postId, otherCommentId, postId), selectValues);
+        verifyAll();
+    }
+
+    @Test
+    public void compositeIdsAreFetchedByPartitions() throws Exception {
+        UUID first = UUID.fromString("0d9d6b3e-2c4e-4d4f-9c5c-0f1d7a3c5e61");
+        UUID missing = UUID.fromString("6c2f3a7e-8b1d-4e2a-a1f4-3e5b9c7d2a10");
+        UUID third = UUID.fromString("9a4e1c2b-7d3f-4b6a-8e5c-1f2a3b4c5d6e");
+        List<Object> selectValues = new ArrayList<>();
+        BoundStatement select = createNiceMock(BoundStatement.class);
+        List<SettableFuture<ResultSet>> sent = new ArrayList<>();
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(select, selectValues));
+        expect(template.executeAsync(select)).andAnswer(() -> {
+            SettableFuture<ResultSet> future = SettableFuture.create();
+            sent.add(future);
+            return resultSetFuture(future);
+        }).times(3);
+        expect(template.isBatchStarted()).andStubReturn(false);
+        ResultSet firstRs = commentResult(first);
+        ResultSet missingRs = commentResult(null);
+        ResultSet thirdRs = commentResult(third);
+        replayAll();
+
+        CommentRepository comments = new CommentRepository() {
+            @Override
+            protected Comment readEntity(Row row) {
+                return comment(new CommentPk(postId, row.getUUID("comment_id")));
+            }
+        };
+        comments.setTemplate(template);
+        comments.setConverter(new MappingCassandraEntityConverter());
+        comments.setMaxInFlightRequests(2);
+
+        CompletableFuture<Iterable<Comment>> found = comments.findAllAsync(Arrays.asList(
+                new CommentPk(postId, first), new CommentPk(postId, missing), new CommentPk(postId, third)));
+
+        // one query per id, at most two at a time
+        assertEquals(2, sent.size());
+        assertEquals(Arrays.asList(first, postId, missing, postId), selectValues);
+
+        sent.get(1).set(missingRs);
+        assertEquals(3, sent.size());
+        sent.get(2).set(thirdRs);
+        assertFalse(found.isDone());
+        sent.get(0).set(firstRs);
+
+        // in the order of the ids, the missing one is skipped
+        List<UUID> commentIds = new ArrayList<>();
+        for (Comment comment: found.get()) {
+            commentIds.add(comment.getId().getCommentId());
+        }
+        assertEquals(Arrays.asList(first, third), commentIds);
+        verifyAll();
+    }
+
+    @Test
+    public void nullsAreLeftUnsetInCachedInsert() {
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        Capture<Integer> unset = new Capture<>(CaptureType.ALL);
+        List<Object> values = new ArrayList<>();
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound, values));
+        bound.unset(captureInt(unset));
+        expectLastCall().anyTimes();
+        expect(template.execute(bound)).andReturn(null).times(2);
+        replayAll();
+
+        MappingCassandraEntityConverter converter = new MappingCassandraEntityConverter();
+        converter.setNullWriteMode(NullWriteMode.UNSET);
+        repository.setConverter(converter);
+
+        Post untitled = post();
+        repository.save(untitled);
+        List<Integer> nulls = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == null)
+                nulls.add(i);
+        }
+
+        // unset columns keep their stored values and leave no tombstones
+        assertTrue(values.contains(untitled.getId()));
+        assertFalse(nulls.isEmpty());
+        assertEquals(nulls, unset.getValues());
+
+        // another set of nulls binds the same INSERT of all columns
+        Post titled = post();
+        titled.setTitle("title");
+        repository.save(titled);
+        assertEquals(1, prepared.getValues().size());
+        assertTrue(prepared.getValue().toString().startsWith("INSERT INTO post"));
+        verifyAll();
+    }
+
+    @Test
+    public void dirtyTrackingUpdatesChangedColumns() {
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        BoundStatement bound = createMock(BoundStatement.class);
+
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound)).times(2);
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound).times(2);
+        expect(template.execute(bound)).andReturn(null).times(2);
+        expect(template.isBatchStarted()).andReturn(false).times(3);
+        replayAll();
+
+        repository.setDirtyTracking(true);
+
+        Post post = new Post();
+        post.setId(postId);
+        post.setTitle("title");
+        repository.save(post);
+
+        post.setTitle("new title");
+        repository.save(post);
+
+        // nothing changed, nothing is written
+        repository.save(post);
+
+        assertTrue(prepared.getValues().get(0).toString().startsWith("INSERT INTO post"));
+        assertEquals("UPDATE post SET title=? WHERE id=?;", prepared.getValues().get(1).toString());
+        verifyAll();
+    }
+
+    @Test
+    public void derivedQueriesArePreparedAtCreation() {
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        List<Object> values = new ArrayList<>();
+        BoundStatement bound = createMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        Row row = createMock(Row.class);
+
+        expect(template.getLoggedKeyspace()).andStubReturn(null);
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound, values)).times(3);
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound);
+        expect(template.execute(bound)).andReturn(rs);
+        expect(rs.isExhausted()).andReturn(false);
+        expect(rs.one()).andReturn(row);
+        expect(row.getLong(0)).andReturn(3L);
+        replayAll();
+
+        PostQueries queries = repository.createQueries(PostQueries.class);
+
+        Set<String> cql = new HashSet<>();
+        for (RegularStatement statement: prepared.getValues()) {
+            cql.add(statement.toString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList("SELECT count(*) FROM post WHERE id IN ?;",
+                "SELECT id FROM post WHERE id=? LIMIT 1;",
+                "SELECT count(*) FROM post WHERE type=? ALLOW FILTERING;")), cql);
+
+        assertEquals(3L, queries.countByType(PostType.TYPE1));
+        assertEquals(Collections.singletonList("TYPE1"), values);
+        verifyAll();
+    }
+
+    @Test
+    public void booleanCriteriaAreBound() {
+        Capture<RegularStatement> prepared = new Capture<>();
+        List<Object> values = new ArrayList<>();
+        BoundStatement bound = createMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        Row row = createMock(Row.class);
+
+        expect(template.getLoggedKeyspace()).andStubReturn(null);
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound, values));
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound);
+        expect(template.execute(bound)).andReturn(rs);
+        expect(rs.isExhausted()).andReturn(false);
+        expect(rs.one()).andReturn(row);
+        expect(row.getLong(0)).andReturn(2L);
+        replayAll();
+
+        BooleanQueries queries = repository.createQueries(BooleanQueries.class);
+
+        // prepare rejects inline values
+        assertEquals("SELECT count(*) FROM post WHERE crypto=? ALLOW FILTERING;", prepared.getValue().toString());
+        assertEquals(2L, queries.countByCryptoTrue());
+        assertEquals(Collections.singletonList(true), values);
+        verifyAll();
+    }
+
+    @Test
+    public void derivedDeleteForgetsSnapshots() {
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        BoundStatement bound = createMock(BoundStatement.class);
+
+        expect(template.getLoggedKeyspace()).andStubReturn(null);
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound)).times(2);
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound).times(3);
+        expect(template.execute(bound)).andReturn(null).times(3);
+        expect(template.isBatchStarted()).andReturn(false).times(2);
+        replayAll();
+
+        repository.setDirtyTracking(true);
+        DeleteQueries queries = repository.createQueries(DeleteQueries.class);
+
+        Post post = new Post();
+        post.setId(postId);
+        post.setTitle("title");
+        repository.save(post);
+
+        queries.deleteById(postId);
+
+        // a partial update would bring back a part of the deleted row
+        post.setTitle("new title");
+        repository.save(post);
+
+        assertEquals("DELETE FROM post WHERE id=?;", prepared.getValues().get(0).toString());
+        assertTrue(prepared.getValues().get(1).toString().startsWith("INSERT INTO post"));
+        verifyAll();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deleteByNonKeyColumnIsRejected() {
+        expect(template.getLoggedKeyspace()).andStubReturn(null);
+        replayAll();
+
+        repository.createQueries(NonKeyDeleteQueries.class);
+    }
+
+    @Test
+    public void filteringNeedsOptIn() {
+        Capture<RegularStatement> prepared = new Capture<>();
+
+        expect(template.getLoggedKeyspace()).andStubReturn("ks");
+        expect(template.getClusterMetadata()).andStubReturn(Tokens.metadata());
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(createNiceMock(BoundStatement.class)));
+        replayAll();
+
+        try {
+            repository.createQueries(NonKeySelectQueries.class);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("title"));
+        }
+
+        repository.createQueries(FilteringQueries.class);
+        assertEquals("SELECT count(*) FROM post WHERE title=? ALLOW FILTERING;", prepared.getValue().toString());
+        verifyAll();
+    }
+
+    @Test
+    public void multiGetIsSplitIntoChunks() throws Exception {
+        UUID otherId = UUID.randomUUID();
+        UUID lastId = UUID.randomUUID();
+        Capture<RegularStatement> prepared = new Capture<>(CaptureType.ALL);
+        List<Object> values = new ArrayList<>();
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        ResultSet rs = createNiceMock(ResultSet.class);
+
+        expect(template.getLoggedKeyspace()).andReturn(null);
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound, values)).times(2);
+        expect(template.executeAsync(bound)).andReturn(completedFuture(rs)).times(2);
+        expect(rs.iterator()).andStubReturn(Collections.emptyIterator());
+        expect(rs.isFullyFetched()).andStubReturn(true);
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        repository.setMultiGetChunkSize(2);
+        assertFalse(repository.findAllAsync(Arrays.asList(postId, otherId, lastId)).get().iterator().hasNext());
+
+        assertTrue(prepared.getValues().get(0).toString().endsWith(" FROM post WHERE id IN ?;"));
+        // one list per chunk in input order, each followed by the single-id select of its routing key
+        assertEquals(Arrays.asList(Arrays.asList(postId, otherId), postId, Collections.singletonList(lastId), lastId),
+                values);
+        verifyAll();
+    }
+
+    @Test
+    public void writesAreBatchedByPartition() throws Exception {
+        BoundStatement first = partitionWrite(1);
+        BoundStatement second = partitionWrite(2);
+        BoundStatement third = partitionWrite(1);
+        Capture<Statement> executed = new Capture<>(CaptureType.ALL);
+
+        expect(template.executeAsync(capture(executed))).andReturn(completedFuture(null)).times(2);
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        List<String> written = new ArrayList<>();
+        repository.writeByPartition(Arrays.asList(new SimpleImmutableEntry<>("first", first),
+                new SimpleImmutableEntry<>("second", second), new SimpleImmutableEntry<>("third", third)),
+                written::add).get();
+
+        BatchStatement batch = (BatchStatement) executed.getValues().get(0);
+        assertEquals(Arrays.asList(first, third), new ArrayList<>(batch.getStatements()));
+        assertSame(second, executed.getValues().get(1));
+        assertEquals(Arrays.asList("first", "third", "second"), written);
+        verifyAll();
+    }
+
+    @Test
+    public void estimateWithoutKeyspaceFailsResult() throws Exception {
+        expect(template.getLoggedKeyspace()).andReturn(null);
+        replayAll();
+
+        repository.setCountMode(CountMode.ESTIMATED);
+        CompletableFuture<Long> count = repository.countAsync();
+
+        try {
+            count.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verifyAll();
+    }
+
+    @Test
+    public void tokenRangeCountSumsSubRanges() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expectTokenRangeQueries(bound);
+        expect(template.executeAsync(bound)).andReturn(completedFuture(countResult(3)))
+                .andReturn(completedFuture(countResult(4)));
+        replayAll();
+
+        repository.setCountMode(CountMode.TOKEN_RANGES);
+        repository.setTokenRangeCountOptions(tokenRangeCountOptions(0, 1));
+
+        assertEquals(7L, (long) repository.countAsync().get());
+        verifyAll();
+    }
+
+    @Test
+    public void tokenRangeCountRetriesWithGrowingDelay() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expectTokenRangeQueries(bound);
+        expect(template.executeAsync(bound)).andReturn(failedFuture()).times(2)
+                .andReturn(completedFuture(countResult(3)))
+                .andReturn(completedFuture(countResult(4)));
+        replayAll();
+
+        repository.setCountMode(CountMode.TOKEN_RANGES);
+        repository.setTokenRangeCountOptions(tokenRangeCountOptions(2, 20));
+
+        final long started = System.nanoTime();
+        assertEquals(7L, (long) repository.countAsync().get());
+
+        // the first retry waits 20 ms, the second one 40 ms
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(60));
+        verifyAll();
+    }
+
+    @Test
+    public void tokenRangeCountFailsAfterLastRetry() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expectTokenRangeQueries(bound);
+        // one try and two retries of the first range, the second range is not counted
+        expect(template.executeAsync(bound)).andReturn(failedFuture()).times(3);
+        replayAll();
+
+        repository.setCountMode(CountMode.TOKEN_RANGES);
+        repository.setTokenRangeCountOptions(tokenRangeCountOptions(2, 1));
+
+        try {
+            repository.countAsync().get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoHostAvailableException);
+        }
+        verifyAll();
+    }
+
+    @Test
+    public void scanPagesThroughRangesNotInCheckpoint() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        ResultSet firstPage = createMock(ResultSet.class);
+        ResultSet secondPage = createMock(ResultSet.class);
+        SettableFuture<ResultSet> fetched = SettableFuture.create();
+
+        expectTokenRangeQueries(bound);
+        expect(template.executeAsync(bound)).andReturn(completedFuture(firstPage));
+        expect(firstPage.getAvailableWithoutFetching()).andReturn(2);
+        expect(firstPage.one()).andReturn(titleRow("first")).andReturn(titleRow("second"));
+        expect(firstPage.isFullyFetched()).andReturn(false);
+        expect(template.fetchMoreResults(firstPage)).andReturn(fetched);
+        expect(secondPage.getAvailableWithoutFetching()).andReturn(1);
+        expect(secondPage.one()).andReturn(titleRow("third"));
+        expect(secondPage.isFullyFetched()).andReturn(true);
+        replayAll();
+
+        TitleRepository posts = new TitleRepository();
+        posts.setTemplate(template);
+        posts.setConverter(new MappingCassandraEntityConverter());
+
+        // the second range was scanned by an earlier run
+        ScanCheckpoint checkpoint = new ScanCheckpoint(
+                Collections.singleton(Tokens.range(0, Long.MIN_VALUE).toString()));
+        List<String> titles = new ArrayList<>();
+        CompletableFuture<Void> scanned = posts.scanAll(scanOptions(), checkpoint, post -> titles.add(post.getTitle()));
+
+        // the range is completed only with its last page
+        assertFalse(scanned.isDone());
+        assertFalse(checkpoint.isCompleted(Tokens.range(Long.MIN_VALUE, 0)));
+
+        fetched.set(secondPage);
+        scanned.get();
+        assertEquals(Arrays.asList("first", "second", "third"), titles);
+        assertTrue(checkpoint.isCompleted(Tokens.range(Long.MIN_VALUE, 0)));
+        verifyAll();
+    }
+
+    @Test
+    public void failedRangeFailsScan() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+
+        expectTokenRangeQueries(bound);
+        expect(template.executeAsync(bound)).andReturn(completedFuture(rs)).andReturn(failedFuture());
+        expect(rs.getAvailableWithoutFetching()).andReturn(1);
+        expect(rs.one()).andReturn(titleRow("first"));
+        expect(rs.isFullyFetched()).andReturn(true);
+        replayAll();
+
+        TitleRepository posts = new TitleRepository();
+        posts.setTemplate(template);
+        posts.setConverter(new MappingCassandraEntityConverter());
+
+        ScanCheckpoint checkpoint = new ScanCheckpoint();
+        try {
+            posts.scanAll(scanOptions(), checkpoint, post -> { }).get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoHostAvailableException);
+        }
+
+        // a resumed scan reads only the failed range
+        assertEquals(Collections.singleton(Tokens.range(Long.MIN_VALUE, 0).toString()),
+                checkpoint.getCompletedRanges());
+        verifyAll();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void orIsRejected() {
+        replayAll();
+
+        repository.createQueries(InvalidQueries.class);
+    }
+
+    @Test
+    public void rowsAreMappedOnMappingExecutor() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        List<Runnable> tasks = new ArrayList<>();
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(template.executeAsync(bound)).andReturn(completedFuture(rs));
+        expect(rs.isExhausted()).andReturn(false);
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        repository.setMappingExecutor(tasks::add);
+        CompletableFuture<Boolean> exists = repository.existsAsync(postId);
+
+        // nothing is mapped on the thread that completed the query
+        assertFalse(exists.isDone());
+        assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+        assertTrue(exists.get());
+        verifyAll();
+    }
+
+    @Test
+    public void rejectedMappingFailsResult() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(template.executeAsync(bound)).andReturn(completedFuture(null));
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        repository.setMappingExecutor(task -> {
+            throw new RejectedExecutionException("shut down");
+        });
+
+        try {
+            repository.existsAsync(postId).get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        verifyAll();
+    }
+
+    @Test
+    public void batchedWritesStayInBatchWithMappingPool() throws Exception {
+        Session session = createMock(Session.class);
+        PreparedStatement insert = createNiceMock(PreparedStatement.class);
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        Capture<Statement> executed = new Capture<>();
+
+        expect(insert.getQueryString()).andStubReturn("INSERT INTO post (id) VALUES (?)");
+        expect(bound.preparedStatement()).andStubReturn(insert);
+        expect(session.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(session.execute(capture(executed))).andReturn(null);
+        replayAll();
+
+        CassandraTemplateImpl batchTemplate = new CassandraTemplateImpl();
+        batchTemplate.setSession(session);
+        repository.setTemplate(batchTemplate);
+        repository.setMaxInFlightRequests(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            repository.setMappingExecutor(pool);
+            batchTemplate.startBatch(new BatchAttributes());
+
+            // the result of a batched write is handled on the thread of the batch
+            assertTrue(repository.saveAsync(post()).isDone());
+            repository.saveAllAsync(Arrays.asList(post(), post(), post())).get();
+
+            batchTemplate.applyBatch();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(4, ((BatchStatement) executed.getValue()).size());
+        verifyAll();
+    }
+
+    @Test
+    public void saveAllKeepsInFlightWritesBounded() throws Exception {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        List<SettableFuture<ResultSet>> sent = new ArrayList<>();
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(template.executeAsync(bound)).andAnswer(() -> {
+            SettableFuture<ResultSet> future = SettableFuture.create();
+            sent.add(future);
+            return resultSetFuture(future);
+        }).times(4);
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        repository.setMaxInFlightRequests(2);
+        List<Post> posts = Arrays.asList(post(), post(), post(), post());
+        CompletableFuture<Iterable<Post>> saved = repository.saveAllAsync(posts);
+
+        // the next insert is sent when one completes
+        assertEquals(2, sent.size());
+        sent.get(1).set(null);
+        assertEquals(3, sent.size());
+        sent.get(0).set(null);
+        assertEquals(4, sent.size());
+        sent.get(2).set(null);
+        assertFalse(saved.isDone());
+
+        sent.get(3).set(null);
+        assertEquals(posts, saved.get());
+        verifyAll();
+    }
+
+    @Test
+    public void saveAllReportsFailedEntities() {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(template.executeAsync(bound)).andReturn(completedFuture(null)).andReturn(failedFuture())
+                .andReturn(completedFuture(null));
+        expect(template.isBatchStarted()).andStubReturn(false);
+        replayAll();
+
+        List<Post> posts = Arrays.asList(post(), post(), post());
+        try {
+            // the failure does not stop the third insert
+            repository.saveAll(posts);
+            fail("expected BulkWriteException");
+        } catch (BulkWriteException e) {
+            assertEquals(2, e.getSucceeded());
+            assertEquals(1, e.getFailures().size());
+            assertSame(posts.get(1), e.getFailures().get(0).getEntity());
+            assertTrue(e.getFailures().get(0).getCause() instanceof NoHostAvailableException);
+        }
+        verifyAll();
+    }
+
+    @Test
+    public void saveAllInBatchSavesOneByOne() throws Exception {
+        List<Object> values = new ArrayList<>();
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+
+        expect(template.isBatchStarted()).andStubReturn(true);
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound, values));
+        expect(template.execute(bound)).andReturn(null).times(2);
+        replayAll();
+
+        Post first = post();
+        Post second = post();
+        CompletableFuture<Iterable<Post>> saved = repository.saveAllAsync(Arrays.asList(first, second));
+
+        // the inserts joined the batch in order in the calling thread, nothing was sent asynchronously
+        assertTrue(saved.isDone());
+        assertEquals(Arrays.asList(first, second), saved.get());
+        assertTrue(values.indexOf(first.getId()) < values.indexOf(second.getId()));
+        verifyAll();
+    }
+
+    @Test
+    public void cacheHitsMapNewEntities() {
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        Row row = createNiceMock(Row.class);
+
+        expect(template.prepare(anyObject(RegularStatement.class))).andReturn(preparedStatement(bound));
+        expect(template.execute(bound)).andReturn(rs);
+        expect(rs.isExhausted()).andReturn(false);
+        expect(rs.one()).andReturn(row);
+        expect(row.getString("title")).andStubReturn("title");
+        replayAll();
+
+        PostRepository posts = new PostRepository() {
+            @Override
+            protected Post readEntity(Row r) {
+                Post post = new Post();
+                post.setTitle(r.getString("title"));
+                return post;
+            }
+        };
+        posts.setTemplate(template);
+        posts.setConverter(new MappingCassandraEntityConverter());
+        // Post has encrypted fields
+        EntityCacheOptions options = new EntityCacheOptions();
+        options.setCacheDecrypted(true);
+        posts.setEntityCacheOptions(options);
+
+        Post found = posts.findById(postId).get();
+        found.setTitle("unsaved change");
+
+        // served from the cache, not changed by the caller
+        Post cached = posts.findById(postId).get();
+        assertNotSame(found, cached);
+        assertEquals("title", cached.getTitle());
+        assertEquals(1, posts.getEntityCacheStats().hitCount());
+        verifyAll();
+    }
+
+    @Test
+    public void profileIsAppliedToBoundStatements() {
+        Capture<RegularStatement> prepared = new Capture<>();
+        BoundStatement bound = createMock(BoundStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+
+        ExecutionProfile profile = new ExecutionProfile();
+        profile.setSerialConsistencyLevel(ConsistencyLevel.LOCAL_SERIAL);
+        profile.setIdempotent(false);
+
+        expect(template.getExecutionProfile("lwt")).andStubReturn(profile);
+        expect(template.prepare(capture(prepared))).andReturn(preparedStatement(bound));
+        expect(bound.setConsistencyLevel(anyObject())).andReturn(bound);
+        expect(bound.setSerialConsistencyLevel(ConsistencyLevel.LOCAL_SERIAL)).andReturn(bound);
+        expect(bound.setIdempotent(false)).andReturn(bound);
+        expect(template.execute(bound)).andReturn(rs);
+        expect(rs.isExhausted()).andReturn(true);
+        replayAll();
+
+        repository.setExecutionProfileName("lwt");
+        assertFalse(repository.existsById(postId));
+
+        // the cached prepared statement is shared by all profiles
+        assertNull(prepared.getValue().getSerialConsistencyLevel());
+        assertEquals(Boolean.TRUE, prepared.getValue().isIdempotent());
+        verifyAll();
+    }
+
+    @Test
+    public void profileIsPassedToLaterSteps() throws Exception {
+        final Function<Integer, String> step;
+        final String previous = ExecutionProfileContext.set("lwt");
+        try {
+            step = repository.withCurrentExecutionProfile(i -> ExecutionProfileContext.get() + i);
+        } finally {
+            ExecutionProfileContext.set(previous);
+        }
+
+        // later steps are launched on driver threads
+        assertEquals("lwt1", CompletableFuture.supplyAsync(() -> step.apply(1)).get());
+        assertNull(ExecutionProfileContext.get());
+    }
+
+    private static Post post() {
+        Post post = new Post();
+        post.setId(UUID.randomUUID());
+        return post;
+    }
+
+    private static Comment comment(CommentPk id) {
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setText("text");
+        return comment;
+    }
+
+    private BoundStatement partitionWrite(int partition) {
+        BoundStatement statement = createNiceMock(BoundStatement.class);
+        expect(statement.getRoutingKey(anyObject(), anyObject())).andStubReturn(ByteBuffer.wrap(new byte[]{(byte) partition}));
+        return statement;
+    }
+
+    /**
+     * @param commentId id of the found comment, null if it is missing
+     */
+    private ResultSet commentResult(UUID commentId) {
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.isExhausted()).andStubReturn(commentId == null);
+        if (commentId != null) {
+            Row row = createNiceMock(Row.class);
+            expect(row.getUUID("comment_id")).andStubReturn(commentId);
+            expect(rs.one()).andReturn(row);
+        }
+        return rs;
+    }
+
+    private Row titleRow(String title) {
+        Row row = createNiceMock(Row.class);
+        expect(row.getString("title")).andStubReturn(title);
+        return row;
+    }
+
+    private static TokenRangeScanOptions scanOptions() {
+        TokenRangeScanOptions options = new TokenRangeScanOptions();
+        options.setSplits(2);
+        options.setParallelism(1);
+        return options;
+    }
+
+    private void expectTokenRangeQueries(BoundStatement bound) {
+        // two ring ranges, the last one is open-ended
+        expect(template.getClusterMetadata()).andStubReturn(Tokens.metadata(
+                Tokens.range(Long.MIN_VALUE, 0), Tokens.range(0, Long.MIN_VALUE)));
+        expect(template.getLoggedKeyspace()).andStubReturn("ks");
+        expect(template.prepare(anyObject(RegularStatement.class))).andStubReturn(preparedStatement(bound));
+        expect(template.isBatchStarted()).andStubReturn(false);
+    }
+
+    private ResultSet countResult(long count) {
+        ResultSet rs = createMock(ResultSet.class);
+        Row row = createMock(Row.class);
+        expect(rs.isExhausted()).andReturn(false);
+        expect(rs.one()).andReturn(row);
+        expect(row.getLong(0)).andReturn(count);
+        return rs;
+    }
+
+    private static TokenRangeCountOptions tokenRangeCountOptions(int retries, int retryDelayMillis) {
+        TokenRangeCountOptions options = new TokenRangeCountOptions();
+        options.setSplits(2);
+        options.setParallelism(1);
+        options.setRetries(retries);
+        options.setRetryDelayMillis(retryDelayMillis);
+        return options;
+    }
+
+    private static ResultSetFuture failedFuture() {
+        return resultSetFuture(Futures.immediateFailedFuture(new NoHostAvailableException(Collections.emptyMap())));
+    }
+
+    private static ResultSetFuture resultSetFuture(ListenableFuture<ResultSet> future) {
+        return (ResultSetFuture) Proxy.newProxyInstance(ResultSetFuture.class.getClassLoader(),
+                new Class[]{ResultSetFuture.class}, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(future, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static ResultSetFuture completedFuture(ResultSet rs) {
+        return resultSetFuture(Futures.immediateFuture(rs));
+    }
+
+    private static PreparedStatement preparedStatement(BoundStatement bound) {
+        return preparedStatement(bound, new ArrayList<>());
+    }
+
+    private static PreparedStatement preparedStatement(BoundStatement bound, List<Object> values) {
+        // bind is varargs, any number of values returns the bound statement
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("bind")) {
+                        if (args != null)
+                            values.addAll(Arrays.asList((Object[]) args[0]));
+                        return bound;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private interface PostQueries {
+        long countByIdIn(Collection<UUID> ids);
+
+        boolean existsById(UUID id);
+
+        @AllowFiltering
+        long countByType(PostType type);
+    }
+
+    private interface BooleanQueries {
+        @AllowFiltering
+        long countByCryptoTrue();
+    }
+
+    private interface DeleteQueries {
+        void deleteById(UUID id);
+    }
+
+    private interface NonKeyDeleteQueries {
+        void deleteByTitle(String title);
+    }
+
+    private interface NonKeySelectQueries {
+        long countByTitle(String title);
+    }
+
+    private interface FilteringQueries {
+        @AllowFiltering
+        long countByTitle(String title);
+    }
+
+    private interface InvalidQueries {
+        Iterable<Post> findByTitleOrBody(String title, String body);
+    }
+
+    private static class CommentRepository extends BaseCassandraRepository<Comment, CommentPk> {
+        @Override
+        protected Class<?> getEntityClass() {
+            return Comment.class;
+        }
+    }
+
+    private static class PostRepository extends BaseCassandraRepository<Post, UUID> {
+        @Override
+        protected Class<?> getEntityClass() {
+            return Post.class;
+        }
+    }
+
+    /**
+     * Maps only the title of a row.
+     */
+    private static class TitleRepository extends PostRepository {
+        @Override
+        protected Post readEntity(Row row) {
+            Post post = new Post();
+            post.setTitle(row.getString("title"));
+            return post;
+        }
+    }
+
+}
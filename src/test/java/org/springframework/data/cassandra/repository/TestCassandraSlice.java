@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestCassandraSlice {
+
+    @Test
+    public void nextPageable() {
+        CassandraSlice<String> slice = new CassandraSlice<>(Arrays.asList("a", "b"), CassandraPageRequest.first(2), "0011");
+
+        assertTrue(slice.hasNext());
+        assertEquals("0011", slice.getPagingState());
+
+        CassandraPageRequest next = (CassandraPageRequest) slice.nextPageable();
+        assertEquals(1, next.getPageNumber());
+        assertEquals(2, next.getPageSize());
+        assertEquals("0011", next.getPagingState());
+        assertEquals(CassandraPageRequest.of(2, "0011"), next);
+    }
+
+    @Test
+    public void lastSlice() {
+        CassandraSlice<String> slice = new CassandraSlice<>(Arrays.asList("a"), CassandraPageRequest.of(2, "0011"), null);
+
+        assertFalse(slice.hasNext());
+        assertNull(slice.getPagingState());
+        assertEquals(Pageable.unpaged(), slice.nextPageable());
+    }
+
+    @Test
+    public void firstPage() {
+        assertEquals(CassandraPageRequest.first(10), CassandraPageRequest.of(10, null));
+        assertEquals(CassandraPageRequest.first(10), CassandraPageRequest.of(10, "0011").first());
+        assertNotEquals(CassandraPageRequest.of(10, "0011"), CassandraPageRequest.of(10, "0022"));
+    }
+
+}
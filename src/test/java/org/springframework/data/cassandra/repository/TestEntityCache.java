@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestEntityCache {
+
+    @Test
+    public void hitsAndMisses() {
+        EntityCache<String> cache = new EntityCache<>(options(100));
+
+        assertNull(cache.get(1));
+        cache.loaded(1, "one", cache.generation(1));
+        assertEquals("one", cache.get(1));
+
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void fullCacheAdmitsOnlyRepeatedIds() {
+        EntityCache<String> cache = new EntityCache<>(options(2));
+        cache.loaded(1, "one", cache.generation(1));
+        cache.loaded(2, "two", cache.generation(2));
+
+        // requested once, not admitted
+        assertNull(cache.get(3));
+        cache.loaded(3, "three", cache.generation(3));
+        assertNull(cache.get(3));
+
+        // requested twice now, admitted
+        cache.loaded(3, "three", cache.generation(3));
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    public void loadStartedBeforeWriteIsNotCached() {
+        EntityCache<String> cache = new EntityCache<>(options(100));
+
+        long generation = cache.generation(1);
+        cache.invalidate(1);
+        cache.loaded(1, "stale", generation);
+        assertNull(cache.get(1));
+
+        generation = cache.generation(3);
+        cache.invalidateAll();
+        cache.loaded(3, "stale", generation);
+        assertNull(cache.get(3));
+
+        // a load after the write is cached
+        cache.loaded(1, "one", cache.generation(1));
+        assertEquals("one", cache.get(1));
+    }
+
+    @Test
+    public void sketchAges() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(15, sketch.frequency("hot"));
+        assertEquals(0, sketch.frequency("cold"));
+
+        for (int i = 0; i < 160; i++) {
+            sketch.increment(i);
+        }
+        assertTrue(sketch.frequency("hot") < 15);
+    }
+
+    private static EntityCacheOptions options(long maximumSize) {
+        EntityCacheOptions options = new EntityCacheOptions();
+        options.setMaximumSize(maximumSize);
+        return options;
+    }
+
+}
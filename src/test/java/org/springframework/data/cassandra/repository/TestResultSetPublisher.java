@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestResultSetPublisher {
+
+    @Test
+    public void demandDrivenPages() {
+        AtomicInteger fetches = new AtomicInteger();
+        ResultSet rs = pagedResultSet(fetches, Arrays.asList(row(1), row(2)), Arrays.asList(row(3), row(4)), Arrays.asList(row(5)));
+        AtomicInteger queries = new AtomicInteger();
+
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(() -> {
+            queries.incrementAndGet();
+            return Futures.immediateFuture(rs);
+        }, r -> r.getInt(0));
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        // nothing is queried before the first request
+        assertEquals(0, queries.get());
+
+        subscriber.subscription.request(2);
+        assertEquals(1, queries.get());
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+        assertEquals(0, fetches.get());
+
+        subscriber.subscription.request(1);
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.items);
+        assertEquals(1, fetches.get());
+
+        subscriber.subscription.request(10);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), subscriber.items);
+        assertEquals(2, fetches.get());
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void pagesAreFetchedByFetchMore() {
+        AtomicInteger fetches = new AtomicInteger();
+        ResultSet rs = pagedResultSet(fetches, Arrays.asList(row(1)), Arrays.asList(row(2)), Arrays.asList(row(3)));
+        AtomicInteger measured = new AtomicInteger();
+
+        // e.g. the template measuring every page fetch
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(() -> Futures.immediateFuture(rs), r -> {
+            measured.incrementAndGet();
+            return r.fetchMoreResults();
+        }, r -> r.getInt(0), MoreExecutors.directExecutor());
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.items);
+        assertEquals(2, measured.get());
+        assertEquals(2, fetches.get());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void pagesAreMappedOnExecutor() {
+        ResultSet rs = pagedResultSet(new AtomicInteger(), Arrays.asList(row(1)), Arrays.asList(row(2)));
+        List<Runnable> tasks = new ArrayList<>();
+
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(() -> Futures.immediateFuture(rs),
+                ResultSet::fetchMoreResults, r -> r.getInt(0), tasks::add);
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        // nothing is mapped on the thread that completed the query
+        assertTrue(subscriber.items.isEmpty());
+
+        tasks.remove(0).run();
+        assertEquals(Arrays.asList(1), subscriber.items);
+
+        tasks.remove(0).run();
+        assertEquals(Arrays.asList(1, 2), subscriber.items);
+        assertTrue(subscriber.completed);
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void failedQuery() {
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(
+                () -> Futures.immediateFailedFuture(new IllegalStateException("boom")), r -> r.getInt(0));
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void nonPositiveRequest() {
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(
+                () -> Futures.immediateFuture(pagedResultSet(new AtomicInteger())), r -> r.getInt(0));
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void cancel() {
+        ResultSetPublisher<Integer> publisher = new ResultSetPublisher<>(
+                () -> Futures.immediateFuture(pagedResultSet(new AtomicInteger(), Arrays.asList(row(1), row(2)))),
+                r -> r.getInt(0));
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+
+        assertEquals(Arrays.asList(1), subscriber.items);
+        assertFalse(subscriber.completed);
+    }
+
+    private static Row row(int value) {
+        return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class[]{Row.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getInt"))
+                return value;
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    @SafeVarargs
+    private static ResultSet pagedResultSet(AtomicInteger fetches, List<Row>... pages) {
+        LinkedList<List<Row>> remainingPages = new LinkedList<>(Arrays.asList(pages));
+        LinkedList<Row> current = new LinkedList<>(remainingPages.isEmpty() ? new ArrayList<>() : remainingPages.poll());
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAvailableWithoutFetching":
+                            return current.size();
+                        case "isFullyFetched":
+                            return remainingPages.isEmpty();
+                        case "one":
+                            return current.poll();
+                        case "fetchMoreResults":
+                            fetches.incrementAndGet();
+                            current.addAll(remainingPages.poll());
+                            ListenableFuture<ResultSet> future = Futures.immediateFuture((ResultSet) proxy);
+                            return future;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+        final List<Integer> items = new ArrayList<>();
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Integer integer) {
+            items.add(integer);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.TokenRange;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestTokenRanges {
+
+    @Test
+    public void wrappingRangeIsUnwrapped() {
+        List<TokenRange> ranges = TokenRanges.split(Tokens.metadata(
+                Tokens.range(100, -100), Tokens.range(-100, 100)), 2);
+
+        // the wrapping range is cut at the end of the ring, the ranges are sorted by start
+        assertEquals(Arrays.asList(Tokens.range(-100, 100), Tokens.range(100, Long.MIN_VALUE),
+                Tokens.range(Long.MIN_VALUE, -100)), ranges);
+    }
+
+    @Test
+    public void ringRangesAreSplitEvenly() {
+        List<TokenRange> ranges = TokenRanges.split(Tokens.metadata(
+                Tokens.range(Long.MIN_VALUE, 0), Tokens.range(0, Long.MIN_VALUE)), 4);
+
+        assertEquals(Arrays.asList(Tokens.range(Long.MIN_VALUE, -(1L << 62)), Tokens.range(-(1L << 62), 0),
+                Tokens.range(0, 1L << 62), Tokens.range(1L << 62, Long.MIN_VALUE)), ranges);
+    }
+
+    @Test
+    public void splitsAreRoundedUpPerRingRange() {
+        TokenRange first = Tokens.range(Long.MIN_VALUE, 0);
+        TokenRange second = Tokens.range(0, Long.MIN_VALUE);
+
+        assertEquals(4, TokenRanges.split(Tokens.metadata(first, second), 3).size());
+        assertEquals(2, TokenRanges.split(Tokens.metadata(first, second), 1).size());
+        // default splits per ring range
+        assertEquals(8, TokenRanges.split(Tokens.metadata(first, second), 0).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unknownRingIsRejected() {
+        TokenRanges.split(Tokens.metadata(), 4);
+    }
+
+    @Test
+    public void lastRangeOfRingIsOpenEnded() {
+        assertTrue(TokenRanges.isOpenEnded(Tokens.range(100, Long.MIN_VALUE)));
+        assertFalse(TokenRanges.isOpenEnded(Tokens.range(Long.MIN_VALUE, -100)));
+        assertFalse(TokenRanges.isOpenEnded(Tokens.range(-100, 100)));
+    }
+
+    @Test
+    public void partitionKeyColumnsAreReadFromMetadata() {
+        assertArrayEquals(new String[]{"id"}, TokenRanges.partitionKeyColumns(Tokens.metadata(), "ks", "post"));
+
+        try {
+            TokenRanges.partitionKeyColumns(Tokens.metadata(), "ks", "comment");
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("ks.comment"));
+        }
+    }
+
+}
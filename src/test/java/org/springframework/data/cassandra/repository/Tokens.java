@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.repository;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.Token;
+import com.datastax.driver.core.TokenRange;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ * Murmur3 token ranges and ring metadata for token range tests, the driver creates them only
+ * from the metadata of a connected cluster.
+ *
+ * @author Alexandr V Solomatin
+ */
+final class Tokens {
+
+    private Tokens() {}
+
+    static Token token(long value) {
+        try {
+            final Object factory = factory();
+            final Method fromString = factory.getClass().getSuperclass().getDeclaredMethod("fromString", String.class);
+            fromString.setAccessible(true);
+            return (Token) fromString.invoke(factory, Long.toString(value));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static TokenRange range(long start, long end) {
+        try {
+            final Object factory = factory();
+            final Constructor<TokenRange> constructor = TokenRange.class.getDeclaredConstructor(Token.class,
+                    Token.class, Class.forName("com.datastax.driver.core.Token$Factory"));
+            constructor.setAccessible(true);
+            return constructor.newInstance(token(start), token(end), factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return replayed metadata of the ring ranges and of table ks.post with partition key id
+     */
+    static Metadata metadata(TokenRange... ranges) {
+        final ColumnMetadata id = createNiceMock(ColumnMetadata.class);
+        expect(id.getName()).andStubReturn("id");
+        final TableMetadata table = createNiceMock(TableMetadata.class);
+        expect(table.getPartitionKey()).andStubReturn(Collections.singletonList(id));
+        expect(table.getPrimaryKey()).andStubReturn(Collections.singletonList(id));
+        expect(table.getIndexes()).andStubReturn(Collections.emptyList());
+        final KeyspaceMetadata keyspace = createNiceMock(KeyspaceMetadata.class);
+        expect(keyspace.getTable("post")).andStubReturn(table);
+        final Metadata metadata = createNiceMock(Metadata.class);
+        expect(metadata.getTokenRanges()).andStubReturn(new HashSet<>(Arrays.asList(ranges)));
+        expect(metadata.getKeyspace("ks")).andStubReturn(keyspace);
+        replay(id, table, keyspace, metadata);
+
+        return metadata;
+    }
+
+    private static Object factory() throws ReflectiveOperationException {
+        final Field field = Class.forName("com.datastax.driver.core.Token$M3PToken").getDeclaredField("FACTORY");
+        field.setAccessible(true);
+        return field.get(null);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestAimdConcurrencyLimiter {
+
+    @Test
+    public void rejectsAboveLimit() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter();
+        limiter.setInitialLimit(2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.onIgnore();
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void additiveIncrease() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter();
+        limiter.setInitialLimit(4);
+        limiter.setMaxLimit(5);
+
+        // fast requests grow the limit only while it is used
+        assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(1);
+        assertEquals(4, limiter.getLimit());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        limiter.onSuccess(1);
+        assertEquals(5, limiter.getLimit());
+        limiter.onSuccess(1);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void multiplicativeDecrease() {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter();
+        limiter.setInitialLimit(100);
+        limiter.setMinLimit(60);
+        limiter.setBackoffRatio(0.5);
+        limiter.setMaxLatencyMillis(10);
+
+        assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(60, limiter.getLimit());
+
+        assertTrue(limiter.tryAcquire());
+        limiter.onDropped();
+        assertEquals(60, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+}
@@ -15,15 +15,40 @@
  */
 package org.springframework.data.cassandra.template;
 
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.util.concurrent.Futures;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMockRunner;
 import org.easymock.Mock;
 import org.easymock.TestSubject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.data.cassandra.metrics.HistogramMetricsSink;
+import org.springframework.data.cassandra.metrics.MetricTags;
+import org.springframework.data.cassandra.metrics.StatementMetrics;
+import org.springframework.data.cassandra.util.StatementType;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
@@ -86,6 +111,40 @@ public class TestCassandraTemplateImpl {
         verify(session);
     }
 
+    @Test
+    public void prepare() {
+        RegularStatement statement = QueryBuilder.insertInto("c").value("a", QueryBuilder.bindMarker());
+        PreparedStatement prepared = createMock(PreparedStatement.class);
+        expect(session.prepare(statement)).andReturn(prepared);
+        replay(session);
+
+        assertSame(prepared, template.prepare(statement));
+
+        verify(session);
+    }
+
+    @Test
+    public void boundStatementBatch() {
+        PreparedStatement prepared = createMock(PreparedStatement.class);
+        expect(prepared.getQueryString()).andReturn("INSERT INTO c (a) VALUES (?);").anyTimes();
+        BoundStatement statement = createMock(BoundStatement.class);
+        expect(statement.preparedStatement()).andReturn(prepared).anyTimes();
+        replay(prepared, statement, session);
+
+        template.startBatch(ba);
+        assertNull(template.execute(statement));  // write, goes to batch
+
+        verify(session);
+
+        reset(session);
+        expect(session.execute(anyObject(BatchStatement.class))).andReturn(null);
+        replay(session);
+
+        template.applyBatch();
+
+        verify(session);
+    }
+
     @Test
     public void simpleBatch() {
         Statement statement = QueryBuilder.insertInto("c");
@@ -117,6 +176,17 @@ public class TestCassandraTemplateImpl {
         verify(session);
     }
 
+    @Test
+    public void batchStarted() {
+        assertFalse(template.isBatchStarted());
+
+        template.startBatch(ba);
+        assertTrue(template.isBatchStarted());
+
+        template.cancelBatch();
+        assertFalse(template.isBatchStarted());
+    }
+
     @Test(expected = IllegalStateException.class)
     public void notStartedBatchApply() {
         template.applyBatch();
@@ -174,4 +244,284 @@ public class TestCassandraTemplateImpl {
     }
 
 
+    @Test
+    public void singleFlightCoalescesIdenticalReads() {
+        Statement statement = new SimpleStatement("SELECT * FROM post");
+        SettableResultSetFuture first = new SettableResultSetFuture();
+        ResultSet rs = createMock(ResultSet.class);
+        Row row = createMock(Row.class);
+
+        expect(session.executeAsync(statement)).andReturn(first);
+        expect(session.executeAsync(statement)).andReturn(new SettableResultSetFuture());
+        expect(rs.isFullyFetched()).andReturn(true);
+        expect(rs.getAvailableWithoutFetching()).andReturn(1).times(2).andReturn(0);
+        expect(rs.one()).andReturn(row);
+        replay(session, rs, row);
+
+        template.setSingleFlight(true);
+        ResultSetFuture leader = template.executeAsync(statement);
+        ResultSetFuture follower = template.executeAsync(new SimpleStatement("SELECT * FROM post"));
+        first.complete(rs);
+
+        // every caller iterates its own copy of the rows
+        assertSame(row, leader.getUninterruptibly().one());
+        assertSame(row, follower.getUninterruptibly().one());
+
+        // completed queries are not shared
+        template.executeAsync(statement);
+
+        verify(session, rs, row);
+    }
+
+    @Test
+    public void limitedBatchIsSplit() {
+        BatchAttributes limited = new BatchAttributes();
+        limited.setMaxStatements(2);
+        SettableResultSetFuture first = new SettableResultSetFuture();
+        SettableResultSetFuture second = new SettableResultSetFuture();
+        first.complete(null);
+        second.complete(null);
+
+        expect(session.executeAsync(anyObject(BatchStatement.class))).andReturn(first).andReturn(second);
+        replay(session);
+
+        template.startBatch(limited);
+        template.execute(QueryBuilder.insertInto("a").value("a", 1));
+        template.execute(QueryBuilder.insertInto("a").value("a", 2));
+        template.execute(QueryBuilder.insertInto("a").value("a", 3));
+        template.applyBatch();
+
+        assertEquals(2, template.getBatchStats().getBatchCount());
+        assertEquals(3, template.getBatchStats().getStatementCount());
+        assertEquals(2, template.getBatchStats().getMaxStatements());
+        assertEquals(1, template.getBatchStats().getSplitCount());
+
+        verify(session);
+    }
+
+    @Test
+    public void splitAsyncBatchFailsAfterAllParts() throws Exception {
+        BatchAttributes limited = new BatchAttributes();
+        limited.setMaxStatements(1);
+        SettableResultSetFuture first = new SettableResultSetFuture();
+        SettableResultSetFuture second = new SettableResultSetFuture();
+
+        expect(session.executeAsync(anyObject(BatchStatement.class))).andReturn(first).andReturn(second);
+        replay(session);
+
+        template.startBatch(limited);
+        template.execute(QueryBuilder.insertInto("a").value("a", 1));
+        template.execute(QueryBuilder.insertInto("a").value("a", 2));
+        ResultSetFuture applied = template.applyBatchAsync();
+
+        // the other part is still being written
+        first.fail(new NoHostAvailableException(Collections.emptyMap()));
+        assertFalse(applied.isDone());
+
+        second.complete(null);
+        try {
+            applied.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NoHostAvailableException);
+        }
+
+        verify(session);
+    }
+
+    @Test
+    public void unloggedBatchIsSplitByTableAndPartition() {
+        BatchAttributes limited = new BatchAttributes();
+        limited.setUnlogged(true);
+        limited.setMaxStatements(10);
+        Capture<BatchStatement> executed = new Capture<>(CaptureType.ALL);
+        SettableResultSetFuture result = new SettableResultSetFuture();
+        result.complete(null);
+
+        expect(session.executeAsync(capture(executed))).andReturn(result).times(2);
+        replay(session);
+
+        Statement a1 = boundWrite("INSERT INTO ks.a (id, v) VALUES (1, 1)");
+        Statement b1 = boundWrite("INSERT INTO ks.b (id, v) VALUES (1, 1)");
+        Statement a2 = boundWrite("INSERT INTO ks.a (id, v) VALUES (1, 2)");
+
+        template.startBatch(limited);
+        template.execute(a1);
+        template.execute(b1);
+        template.execute(a2);
+        template.applyBatch();
+
+        // the same key bytes in two tables are two partitions
+        assertEquals(Arrays.asList(a1, a2), new ArrayList<>(executed.getValues().get(0).getStatements()));
+        assertEquals(Collections.singletonList(b1), new ArrayList<>(executed.getValues().get(1).getStatements()));
+
+        verify(session);
+    }
+
+    @Test
+    public void nestedAsyncBatch() throws Exception {
+        SettableResultSetFuture applied = new SettableResultSetFuture();
+        expect(session.executeAsync(anyObject(BatchStatement.class))).andReturn(applied);
+        replay(session);
+
+        template.startBatch(ba);
+        template.startBatch(ba);
+        // writes of async calls join the batch
+        assertNull(template.executeAsync(QueryBuilder.insertInto("a").value("a", 1)).get());
+
+        assertTrue(template.applyBatchAsync().isDone());
+        assertTrue(template.isBatchStarted());
+        assertSame(applied, template.applyBatchAsync());
+        assertFalse(template.isBatchStarted());
+
+        verify(session);
+    }
+
+    @Test
+    public void emptyAsyncBatch() throws Exception {
+        replay(session);
+
+        template.startBatch(ba);
+        assertNull(template.applyBatchAsync().get());
+        assertFalse(template.isBatchStarted());
+
+        verify(session);
+    }
+
+    @Test
+    public void concurrencyLimit() throws Exception {
+        AimdConcurrencyLimiter limiter = new AimdConcurrencyLimiter();
+        limiter.setInitialLimit(1);
+        limiter.setMinLimit(1);
+        template.setConcurrencyLimiter(limiter);
+
+        Statement statement = new SimpleStatement("test statement");
+        SettableResultSetFuture pending = new SettableResultSetFuture();
+        expect(session.executeAsync(statement)).andReturn(pending);
+        replay(session);
+
+        assertSame(pending, template.executeAsync(statement));
+        assertEquals(1, limiter.getInFlight());
+
+        // excess request is rejected without reaching the session, the future fails
+        ResultSetFuture rejected = template.executeAsync(statement);
+        try {
+            rejected.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConcurrencyLimitExceededException);
+            assertEquals(1, limiter.getRejectedCount());
+        }
+
+        // a synchronous request throws
+        try {
+            template.execute("test statement");
+            fail("expected ConcurrencyLimitExceededException");
+        } catch (ConcurrencyLimitExceededException e) {
+            assertEquals(2, limiter.getRejectedCount());
+        }
+
+        pending.fail(new OperationTimedOutException(null));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, limiter.getLimit());
+
+        verify(session);
+    }
+
+    @Test
+    public void idempotenceMarking() {
+        Statement select = new SimpleStatement("SELECT * FROM t WHERE id = ?");
+        Statement increment = new SimpleStatement("UPDATE t SET c = c + 1 WHERE id = ?");
+        Statement marked = new SimpleStatement("SELECT * FROM t").setIdempotent(false);
+        expect(session.execute(anyObject(Statement.class))).andReturn(null).times(3);
+        replay(session);
+
+        template.execute(select);
+        template.execute(increment);
+        template.execute(marked);
+
+        assertTrue(select.isIdempotent());
+        assertFalse(increment.isIdempotent());
+        assertFalse(marked.isIdempotent());
+
+        verify(session);
+    }
+
+    @Test
+    public void metrics() {
+        HistogramMetricsSink sink = new HistogramMetricsSink();
+        template.setMetricsSink(sink);
+
+        Statement select = new SimpleStatement("SELECT * FROM ks.t WHERE id = ?").setConsistencyLevel(ConsistencyLevel.ONE);
+        Statement delete = new SimpleStatement("DELETE FROM ks.t WHERE id = ?");
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.getAvailableWithoutFetching()).andReturn(3).times(2);
+        SettableResultSetFuture pending = new SettableResultSetFuture();
+        expect(session.execute(select)).andReturn(rs).times(2);
+        expect(session.executeAsync(delete)).andReturn(pending);
+        replay(session, rs);
+
+        template.execute(select);
+        template.execute(select);
+        template.executeAsync(delete);
+        pending.fail(new OperationTimedOutException(null));
+
+        StatementMetrics selects = sink.getMetrics().get(
+                new MetricTags("ks.t", StatementType.SELECT, ConsistencyLevel.ONE, MetricTags.SUCCESS));
+        assertEquals(2, selects.getLatency().getCount());
+        assertEquals(6, selects.getRows());
+        assertEquals(0, selects.getPageFetches());
+
+        StatementMetrics deletes = sink.getMetrics().get(
+                new MetricTags("ks.t", StatementType.DELETE, null, "OperationTimedOutException"));
+        assertEquals(1, deletes.getLatency().getCount());
+        assertEquals(2, sink.getSummary().size());
+
+        verify(session, rs);
+    }
+
+    @Test
+    public void pageFetchesAreMeasured() throws Exception {
+        HistogramMetricsSink sink = new HistogramMetricsSink();
+        template.setMetricsSink(sink);
+
+        Statement select = new SimpleStatement("SELECT * FROM ks.t").setFetchSize(2);
+        ExecutionInfo info = createNiceMock(ExecutionInfo.class);
+        expect(info.getStatement()).andStubReturn(select);
+        ResultSet rs = createNiceMock(ResultSet.class);
+        expect(rs.getExecutionInfo()).andStubReturn(info);
+        expect(rs.getAvailableWithoutFetching()).andStubReturn(2);
+        expect(rs.isFullyFetched()).andReturn(false).times(2).andReturn(true);
+        expect(rs.fetchMoreResults()).andReturn(Futures.immediateFuture(rs)).times(3);
+        expect(session.execute(select)).andReturn(rs);
+        replay(session, info, rs);
+
+        // three pages, the last fetch of a fully fetched result set is not measured
+        template.execute(select);
+        assertSame(rs, template.fetchMoreResults(rs).get());
+        assertSame(rs, template.fetchMoreResults(rs).get());
+        assertSame(rs, template.fetchMoreResults(rs).get());
+
+        StatementMetrics selects = sink.getMetrics().get(
+                new MetricTags("ks.t", StatementType.SELECT, null, MetricTags.SUCCESS));
+        assertEquals(3, selects.getLatency().getCount());
+        assertEquals(6, selects.getRows());
+        assertEquals(2, selects.getPageFetches());
+
+        verify(session, rs);
+    }
+
+    private static BoundStatement boundWrite(String query) {
+        ColumnDefinitions variables = createNiceMock(ColumnDefinitions.class);
+        PreparedStatement prepared = createNiceMock(PreparedStatement.class);
+        expect(prepared.getQueryString()).andStubReturn(query);
+        expect(prepared.getVariables()).andStubReturn(variables);
+        BoundStatement statement = createNiceMock(BoundStatement.class);
+        expect(statement.preparedStatement()).andStubReturn(prepared);
+        expect(statement.getRoutingKey(anyObject(), anyObject())).andStubReturn(ByteBuffer.wrap(new byte[]{1}));
+        replay(variables, prepared, statement);
+
+        return statement;
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import org.easymock.EasyMockSupport;
+import org.junit.Test;
+import org.springframework.data.cassandra.profile.ExecutionProfile;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestSlowQueryLog extends EasyMockSupport {
+
+    @Test
+    public void boundValuesAreRedacted() {
+        ColumnDefinitions variables = createNiceMock(ColumnDefinitions.class);
+        expect(variables.size()).andStubReturn(2);
+        expect(variables.getName(0)).andStubReturn("id");
+        expect(variables.getName(1)).andStubReturn("secret");
+        PreparedStatement prepared = createNiceMock(PreparedStatement.class);
+        expect(prepared.getQueryString()).andStubReturn("SELECT * FROM t WHERE id = ? AND secret = ?");
+        expect(prepared.getVariables()).andStubReturn(variables);
+        BoundStatement bound = createNiceMock(BoundStatement.class);
+        expect(bound.preparedStatement()).andStubReturn(prepared);
+        expect(bound.getBytesUnsafe(0)).andStubReturn(ByteBuffer.allocate(16));
+        expect(bound.getBytesUnsafe(1)).andStubReturn(null);
+        ExecutionInfo info = createNiceMock(ExecutionInfo.class);
+        expect(info.getTriedHosts()).andStubReturn(Collections.emptyList());
+        expect(info.getSpeculativeExecutions()).andStubReturn(1);
+        ResultSet rs = createNiceMock(ResultSet.class);
+        expect(rs.getExecutionInfo()).andStubReturn(info);
+        expect(rs.getAllExecutionInfo()).andStubReturn(Arrays.asList(info, info));
+        replayAll();
+
+        String message = new SlowQueryLog().describe(bound, 2000, rs, null);
+
+        assertTrue(message, message.startsWith("2000 ms: SELECT * FROM t WHERE id = ? AND secret = ?"));
+        assertTrue(message, message.contains("values=[id=<16 bytes>, secret=null]"));
+        assertTrue(message, message.contains("speculativeExecutions=1 pages=2"));
+    }
+
+    @Test
+    public void simpleStatementFailure() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog();
+        Statement statement = new SimpleStatement("SELECT * FROM t WHERE id = ?", 42);
+
+        assertTrue(slowQueryLog.describe(statement, 5, null, null).contains("values=[<redacted>]"));
+
+        slowQueryLog.setRedactValues(false);
+        String message = slowQueryLog.describe(statement, 5, null, new OperationTimedOutException(null));
+        assertTrue(message, message.contains("values=[42]"));
+        assertTrue(message, message.contains("failed: "));
+    }
+
+    @Test
+    public void profileThreshold() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog();
+        slowQueryLog.setThresholdMillis(500);
+        ExecutionProfile profile = new ExecutionProfile();
+        profile.setName("batch");
+        profile.setSlowQueryThresholdMillis(10000L);
+
+        Statement statement = new SimpleStatement("SELECT * FROM t");
+        assertEquals(500, slowQueryLog.getThresholdMillis(statement));
+
+        profile.apply(statement);
+        assertEquals(10000, slowQueryLog.getThresholdMillis(statement));
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.template;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMockSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestWriteCoalescer extends EasyMockSupport {
+    private CassandraTemplate template;
+    private WriteCoalescer coalescer;
+    private List<ColumnMetadata> primaryKey;
+    private int rows = 100;
+
+    @Before
+    public void setUp() {
+        template = createMock(CassandraTemplate.class);
+
+        coalescer = new WriteCoalescer();
+        coalescer.setTemplate(template);
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    public void fullBufferIsFlushedByPartition() {
+        BoundStatement first = write(1);
+        BoundStatement second = write(2);
+        BoundStatement third = write(1);
+        Capture<Statement> executed = new Capture<>(CaptureType.ALL);
+        SettableResultSetFuture batchResult = new SettableResultSetFuture();
+        SettableResultSetFuture singleResult = new SettableResultSetFuture();
+
+        expect(template.executeAsync(capture(executed))).andReturn(batchResult).andReturn(singleResult);
+        replayAll();
+
+        coalescer.setMaxStatements(3);
+        coalescer.afterPropertiesSet();
+
+        CompletableFuture<Void> firstWritten = coalescer.write(first);
+        CompletableFuture<Void> secondWritten = coalescer.write(second);
+        assertTrue(executed.getValues().isEmpty());
+        CompletableFuture<Void> thirdWritten = coalescer.write(third);
+
+        BatchStatement batch = (BatchStatement) executed.getValues().get(0);
+        assertEquals(Arrays.asList(first, third), new ArrayList<>(batch.getStatements()));
+        assertSame(second, executed.getValues().get(1));
+
+        // every write completes with the batch of its partition
+        batchResult.complete(null);
+        assertTrue(firstWritten.isDone() && thirdWritten.isDone());
+        assertFalse(secondWritten.isDone());
+        singleResult.fail(new IllegalStateException("boom"));
+        assertTrue(secondWritten.isCompletedExceptionally());
+
+        verifyAll();
+    }
+
+    @Test
+    public void bufferIsFlushedAfterDelay() throws Exception {
+        BoundStatement statement = write(1);
+        SettableResultSetFuture result = new SettableResultSetFuture();
+        result.complete(null);
+
+        expect(template.executeAsync(statement)).andReturn(result);
+        replayAll();
+
+        coalescer.setMaxDelayMillis(10);
+        coalescer.afterPropertiesSet();
+
+        coalescer.write(statement).get(5, TimeUnit.SECONDS);
+
+        verifyAll();
+    }
+
+    @Test
+    public void secondWriteOfRowIsSentAfterFirst() {
+        BoundStatement first = write("t", 1, 1);
+        BoundStatement other = write("t", 1, 2);
+        BoundStatement second = write("t", 1, 1);
+        BoundStatement otherTable = write("u", 1, 1);
+        Capture<Statement> executed = new Capture<>(CaptureType.ALL);
+        SettableResultSetFuture firstResult = new SettableResultSetFuture();
+        SettableResultSetFuture secondResult = new SettableResultSetFuture();
+
+        expect(template.executeAsync(capture(executed))).andReturn(firstResult).andReturn(new SettableResultSetFuture())
+                .andReturn(secondResult);
+        replayAll();
+
+        coalescer.setMaxStatements(4);
+        coalescer.afterPropertiesSet();
+
+        coalescer.write(first);
+        coalescer.write(other);
+        CompletableFuture<Void> secondWritten = coalescer.write(second);
+        coalescer.write(otherTable);
+
+        // the same partition key in another table is another group, the second write of the row waits
+        assertEquals(2, executed.getValues().size());
+        BatchStatement batch = (BatchStatement) executed.getValues().get(0);
+        assertEquals(Arrays.asList(first, other), new ArrayList<>(batch.getStatements()));
+        assertSame(otherTable, executed.getValues().get(1));
+
+        // sent after the first batch, its timestamp is later and the second value wins
+        firstResult.complete(null);
+        assertEquals(3, executed.getValues().size());
+        assertSame(second, executed.getValues().get(2));
+        secondResult.complete(null);
+        assertTrue(secondWritten.isDone());
+
+        verifyAll();
+    }
+
+    @Test
+    public void writeAfterDestroyFails() throws Exception {
+        BoundStatement statement = write(1);
+        replayAll();
+
+        coalescer.afterPropertiesSet();
+        coalescer.destroy();
+
+        CompletableFuture<Void> written = coalescer.write(statement);
+
+        // nothing is buffered, the flush timer is stopped
+        assertTrue(written.isCompletedExceptionally());
+        try {
+            written.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verifyAll();
+    }
+
+    private BoundStatement write(int partition) {
+        // every write is of another row
+        return write("t", partition, ++rows);
+    }
+
+    /**
+     * Write of ks.table with primary key (id, c).
+     */
+    private BoundStatement write(String table, int partition, int clustering) {
+        if (primaryKey == null)
+            mockMetadata();
+
+        ColumnDefinitions variables = createNiceMock(ColumnDefinitions.class);
+        expect(variables.size()).andStubReturn(2);
+        expect(variables.getKeyspace(0)).andStubReturn("ks");
+        expect(variables.getTable(0)).andStubReturn(table);
+        expect(variables.contains(anyString())).andStubReturn(true);
+        PreparedStatement prepared = createNiceMock(PreparedStatement.class);
+        expect(prepared.getVariables()).andStubReturn(variables);
+
+        BoundStatement statement = createNiceMock(BoundStatement.class);
+        expect(statement.preparedStatement()).andStubReturn(prepared);
+        expect(statement.getRoutingKey(anyObject(), anyObject())).andStubReturn(ByteBuffer.wrap(new byte[]{(byte) partition}));
+        expect(statement.getBytesUnsafe("id")).andStubReturn(ByteBuffer.wrap(new byte[]{(byte) partition}));
+        expect(statement.getBytesUnsafe("c")).andStubReturn(ByteBuffer.wrap(new byte[]{(byte) clustering}));
+        return statement;
+    }
+
+    private void mockMetadata() {
+        ColumnMetadata id = createNiceMock(ColumnMetadata.class);
+        expect(id.getName()).andStubReturn("id");
+        ColumnMetadata c = createNiceMock(ColumnMetadata.class);
+        expect(c.getName()).andStubReturn("c");
+        primaryKey = Arrays.asList(id, c);
+
+        TableMetadata table = createNiceMock(TableMetadata.class);
+        expect(table.getPrimaryKey()).andStubReturn(primaryKey);
+        KeyspaceMetadata keyspace = createNiceMock(KeyspaceMetadata.class);
+        expect(keyspace.getTable(anyString())).andStubReturn(table);
+        Metadata metadata = createNiceMock(Metadata.class);
+        expect(metadata.getKeyspace("ks")).andStubReturn(keyspace);
+        expect(template.getClusterMetadata()).andStubReturn(metadata);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestConcurrencyUtils {
+
+    @Test
+    public void completedFutures() throws Exception {
+        List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            inputs.add(i);
+        }
+
+        // already completed futures must not overflow the stack
+        List<Integer> result = ConcurrencyUtils.mapAsync(inputs, 4, i -> CompletableFuture.completedFuture(i * 2)).get();
+
+        assertEquals(inputs.size(), result.size());
+        assertEquals(Integer.valueOf(0), result.get(0));
+        assertEquals(Integer.valueOf(199998), result.get(99999));
+    }
+
+    @Test
+    public void emptyInputs() throws Exception {
+        List<Object> result = ConcurrencyUtils.mapAsync(Collections.emptyList(), 4,
+                i -> CompletableFuture.completedFuture(i)).get();
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void boundedInFlight() throws Exception {
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<List<String>> result = ConcurrencyUtils.mapAsync(Arrays.asList("a", "b", "c", "d", "e"), 2,
+                s -> {
+                    started.incrementAndGet();
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    pending.add(future);
+                    return future;
+                });
+
+        assertEquals(2, started.get());
+
+        // completing out of order keeps input order
+        pending.get(1).complete("B");
+        assertEquals(3, started.get());
+        pending.get(0).complete("A");
+        assertEquals(4, started.get());
+        pending.get(3).complete("D");
+        pending.get(2).complete("C");
+        assertFalse(result.isDone());
+        pending.get(4).complete("E");
+
+        assertEquals(Arrays.asList("A", "B", "C", "D", "E"), result.get());
+    }
+
+    @Test
+    public void failureStopsLaunching() throws Exception {
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+
+        CompletableFuture<List<String>> result = ConcurrencyUtils.mapAsync(Arrays.asList("a", "b", "c"), 1,
+                s -> {
+                    CompletableFuture<String> future = new CompletableFuture<>();
+                    pending.add(future);
+                    return future;
+                });
+
+        pending.get(0).completeExceptionally(new IllegalStateException("boom"));
+
+        assertEquals(1, pending.size());
+        try {
+            result.get();
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
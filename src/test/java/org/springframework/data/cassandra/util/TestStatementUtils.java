@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.data.cassandra.util;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Alexandr V Solomatin
+ */
+public class TestStatementUtils {
+
+    @Test
+    public void idempotence() {
+        assertTrue(StatementUtils.isIdempotent("select * from t where id = ?"));
+        assertTrue(StatementUtils.isIdempotent("INSERT INTO t (id, a) VALUES (?, ?) USING TTL 10"));
+        assertTrue(StatementUtils.isIdempotent("UPDATE t SET a = ?, b = 'x' WHERE id = ?"));
+        assertTrue(StatementUtils.isIdempotent("DELETE FROM t WHERE id = ?"));
+
+        assertFalse(StatementUtils.isIdempotent("INSERT INTO t (id) VALUES (?) IF NOT EXISTS"));
+        assertFalse(StatementUtils.isIdempotent("UPDATE t SET a = ? WHERE id = ? IF a = ?"));
+        assertFalse(StatementUtils.isIdempotent("UPDATE t SET c = c + 1 WHERE id = ?"));
+        assertFalse(StatementUtils.isIdempotent("UPDATE t SET l = l + ? WHERE id = ?"));
+        assertFalse(StatementUtils.isIdempotent("INSERT INTO t (id, a) VALUES (now(), ?)"));
+
+        assertNull(StatementUtils.isIdempotent("BEGIN BATCH INSERT INTO t (id) VALUES (1); APPLY BATCH"));
+        assertNull(StatementUtils.isIdempotent("TRUNCATE t"));
+    }
+
+    @Test
+    public void table() {
+        assertEquals("ks.t", StatementUtils.getTable(new SimpleStatement("SELECT a FROM ks.t WHERE id = ?")));
+        assertEquals("t", StatementUtils.getTable(new SimpleStatement("update \"t\" set a = ?")));
+        assertEquals("ks.t", StatementUtils.getTable(QueryBuilder.insertInto("ks", "t").value("a", 1)));
+        assertEquals("ks.t", StatementUtils.getTable(QueryBuilder.select().from("ks", "t").where(QueryBuilder.eq("id", 1))));
+        assertNull(StatementUtils.getTable(new SimpleStatement("TRUNCATE t")));
+    }
+
+    @Test
+    public void type() {
+        assertEquals(StatementType.SELECT, StatementUtils.getType(new SimpleStatement(" select * from t")));
+        assertEquals(StatementType.UPDATE, StatementUtils.getType(QueryBuilder.update("t").with(QueryBuilder.set("a", 1))));
+        assertEquals(StatementType.BATCH, StatementUtils.getType(new BatchStatement()));
+        assertEquals(StatementType.OTHER, StatementUtils.getType(new SimpleStatement("TRUNCATE t")));
+    }
+
+}